@@ -0,0 +1,130 @@
+package com.gateway.auth;
+
+import com.gateway.models.Merchant;
+import com.gateway.repositories.MerchantRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks API credentials against an in-process cache of merchants keyed by API key.
+ * Unknown keys are cached too (for a shorter time) so bad credentials cannot hammer the database.
+ * Every instance drops its copy when a message arrives on {@link #INVALIDATION_CHANNEL}: a merchant id, or "*" for everything.
+ * The same message evicts the merchant from this instance's Hibernate second-level cache.
+ */
+@Component
+public class MerchantAuthenticator implements MessageListener {
+
+    public static final String INVALIDATION_CHANNEL = "merchants:invalidate";
+
+    // The secret is kept as bytes so the constant-time comparison does not re-encode it on every request
+    private record CachedMerchant(Merchant merchant, byte[] secret) {
+        static final CachedMerchant UNKNOWN = new CachedMerchant(null, null);
+    }
+
+    @Autowired private MerchantRepository merchantRepository;
+    @Autowired private RedisMessageListenerContainer listenerContainer;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+
+    private final Cache<String, CachedMerchant> merchantsByApiKey;
+
+    public MerchantAuthenticator(@Value("${auth.cache.max-size:100000}") long maxSize,
+                                 @Value("${auth.cache.ttl-seconds:300}") long ttlSeconds,
+                                 @Value("${auth.cache.negative-ttl-seconds:30}") long negativeTtlSeconds) {
+        long ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        long negativeTtlNanos = TimeUnit.SECONDS.toNanos(negativeTtlSeconds);
+
+        this.merchantsByApiKey = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, CachedMerchant>() {
+                    @Override
+                    public long expireAfterCreate(String key, CachedMerchant value, long currentTime) {
+                        return value.merchant() == null ? negativeTtlNanos : ttlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, CachedMerchant value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, CachedMerchant value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATION_CHANNEL));
+    }
+
+    /**
+     * @return the merchant owning these credentials, or null if they are invalid
+     */
+    public Merchant authenticate(String apiKey, String apiSecret) {
+        if (apiKey == null || apiSecret == null) return null;
+
+        CachedMerchant cached = merchantsByApiKey.get(apiKey, this::load);
+        if (cached.merchant() == null) return null;
+
+        // Constant-time, so response timing does not reveal how much of the secret matched
+        byte[] given = apiSecret.getBytes(StandardCharsets.UTF_8);
+        return MessageDigest.isEqual(cached.secret(), given) ? cached.merchant() : null;
+    }
+
+    private CachedMerchant load(String apiKey) {
+        return merchantRepository.findByApiKey(apiKey)
+                .filter(m -> m.getApiSecret() != null)
+                .map(m -> new CachedMerchant(m, m.getApiSecret().getBytes(StandardCharsets.UTF_8)))
+                .orElse(CachedMerchant.UNKNOWN);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String merchantId = new String(message.getBody(), StandardCharsets.UTF_8);
+        if ("*".equals(merchantId)) {
+            merchantsByApiKey.invalidateAll();
+            entityManagerFactory.getCache().evict(Merchant.class);
+            return;
+        }
+        try {
+            entityManagerFactory.getCache().evict(Merchant.class, UUID.fromString(merchantId));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Ignoring invalidation for malformed merchant id " + merchantId);
+        }
+        // Match on id rather than API key so a rotated key also evicts the old entry
+        merchantsByApiKey.asMap().values().removeIf(cached ->
+                cached.merchant() != null && merchantId.equals(String.valueOf(cached.merchant().getId())));
+    }
+
+    public Map<String, Object> stats() {
+        CacheStats stats = merchantsByApiKey.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("size", merchantsByApiKey.estimatedSize());
+        result.put("hits", stats.hitCount());
+        result.put("misses", stats.missCount());
+        result.put("hit_rate", stats.hitRate());
+        result.put("evictions", stats.evictionCount());
+        return result;
+    }
+}
@@ -0,0 +1,43 @@
+package com.gateway.auth;
+
+import com.gateway.models.Merchant;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Tells every instance to drop its cached copy when a merchant's credentials or webhook settings change through JPA.
+ * For changes made directly in the database: {@code PUBLISH merchants:invalidate <merchant-id>} (or "*").
+ */
+@Component
+public class MerchantChangeListener {
+
+    @Autowired @Lazy private StringRedisTemplate stringRedisTemplate;
+
+    // Runs at flush, before the commit: published any earlier, another instance could reload the old row and cache
+    // it again, and a rolled-back change would still evict
+    @PostUpdate
+    @PostRemove
+    public void merchantChanged(Merchant merchant) {
+        String merchantId = String.valueOf(merchant.getId());
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            publish(merchantId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                publish(merchantId);
+            }
+        });
+    }
+
+    private void publish(String merchantId) {
+        stringRedisTemplate.convertAndSend(MerchantAuthenticator.INVALIDATION_CHANNEL, merchantId);
+    }
+}
@@ -0,0 +1,47 @@
+package com.gateway.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+/**
+ * Sizes the worker's connection pool from its thread settings instead of Hikari's default of 10.
+ * Every worker thread, completion thread and background writer may hold a connection at the same time, so the
+ * pool gets one per thread, capped by {@code db.pool.max-size} to stay within Postgres' max_connections.
+ * An explicit {@code spring.datasource.hikari.maximum-pool-size} always wins.
+ */
+@Component
+@Profile("worker")
+public class DataSourcePoolSizer implements BeanPostProcessor {
+
+    // Outbox relay, webhook log writer, stats flush/reconcile
+    private static final int BACKGROUND_THREADS = 3;
+
+    private final Environment environment;
+
+    public DataSourcePoolSizer(Environment environment) {
+        this.environment = environment;
+    }
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) {
+        if (bean instanceof HikariDataSource dataSource
+                && !environment.containsProperty("spring.datasource.hikari.maximum-pool-size")) {
+            int threads = threads("worker.payments.concurrency", 16)
+                    + threads("worker.refunds.concurrency", 4)
+                    + threads("worker.webhooks.concurrency", 16)
+                    + threads("worker.completion-threads", 16)
+                    + BACKGROUND_THREADS;
+            int size = Math.min(threads, threads("db.pool.max-size", 50));
+            dataSource.setMaximumPoolSize(size);
+            System.out.println("Database pool sized to " + size + " connections for " + threads + " worker threads");
+        }
+        return bean;
+    }
+
+    private int threads(String property, int defaultValue) {
+        return environment.getProperty(property, Integer.class, defaultValue);
+    }
+}
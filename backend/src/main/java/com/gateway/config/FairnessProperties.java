@@ -0,0 +1,44 @@
+package com.gateway.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * How worker pools share their capacity between merchants ({@code worker.fairness.*}).
+ * Each round a merchant with queued jobs may start up to {@code quantum × weight} of them, and never more than
+ * its in-flight cap at once. Both can be overridden per merchant id under {@code worker.fairness.merchants}.
+ */
+@Data
+@ConfigurationProperties(prefix = "worker.fairness")
+public class FairnessProperties {
+
+    private int quantum = 8;
+    private int defaultWeight = 1;
+    private int defaultMaxInFlight = 0; // per merchant and pool, 0 for no cap beyond the pool's own limits
+
+    private long partitionRefreshMs = 500;
+    private long idleSleepMs = 50;
+    private long partitionIdleMs = 600000; // empty partitions untouched this long are retired
+
+    private Map<String, MerchantShare> merchants = new HashMap<>();
+
+    @Data
+    public static class MerchantShare {
+        private Integer weight;
+        private Integer maxInFlight;
+    }
+
+    public int weight(String merchantId) {
+        MerchantShare share = merchantId != null ? merchants.get(merchantId) : null;
+        return Math.max(1, share != null && share.getWeight() != null ? share.getWeight() : defaultWeight);
+    }
+
+    public int maxInFlight(String merchantId) {
+        MerchantShare share = merchantId != null ? merchants.get(merchantId) : null;
+        int max = share != null && share.getMaxInFlight() != null ? share.getMaxInFlight() : defaultMaxInFlight;
+        return max > 0 ? max : Integer.MAX_VALUE;
+    }
+}
@@ -0,0 +1,53 @@
+package com.gateway.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * API rate limits per merchant and endpoint group ({@code ratelimit.*}). Each group has a rate and a burst;
+ * groups without a rate are not limited. Both can be overridden per merchant id under
+ * {@code ratelimit.merchants.<merchant-id>.<group>}.
+ */
+@Data
+@ConfigurationProperties(prefix = "ratelimit")
+public class RateLimitProperties {
+
+    private boolean enabled = true;
+    private long leaseMs = 100;         // each lease from Redis covers about this long of the group's rate
+    private int stripes = 4;            // token counters per local bucket, so concurrent requests rarely contend
+    private long leaseTimeoutMs = 50;   // longest a request waits for a lease when no tokens are held locally
+    private long unenforcedMs = 1000;   // after a failed lease, requests pass without Redis for this long
+    private int leaseThreads = 2;
+    private long maxBuckets = 100000;
+    private long bucketIdleSeconds = 300;
+
+    private Map<String, Limit> groups = new HashMap<>();
+    private Map<String, Map<String, Limit>> merchants = new HashMap<>();
+
+    @Data
+    public static class Limit {
+        private Double ratePerSecond;
+        private Integer burst;
+    }
+
+    public record Quota(double ratePerSecond, long burst) {}
+
+    /**
+     * @return the merchant's quota for the group, or null if the group is not limited
+     */
+    public Quota quota(String merchantId, String group) {
+        Limit base = groups.get(group);
+        Map<String, Limit> overrides = merchantId != null ? merchants.get(merchantId) : null;
+        Limit override = overrides != null ? overrides.get(group) : null;
+
+        Double rate = override != null && override.getRatePerSecond() != null ? override.getRatePerSecond()
+                : base != null ? base.getRatePerSecond() : null;
+        if (rate == null || rate <= 0) return null;
+        Integer burst = override != null && override.getBurst() != null ? override.getBurst()
+                : base != null ? base.getBurst() : null;
+        return new Quota(rate, Math.max(1, burst != null ? burst : (long) Math.ceil(rate)));
+    }
+}
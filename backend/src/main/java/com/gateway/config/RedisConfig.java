@@ -1,11 +1,14 @@
 package com.gateway.config;
 
+import com.gateway.queue.JobCodec;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 @Configuration
 public class RedisConfig {
@@ -18,9 +21,32 @@ public class RedisConfig {
         // Use String serialization for keys (so they are readable in Redis CLI)
         template.setKeySerializer(new StringRedisSerializer());
         
-        // Use JSON serialization for values (so we can store objects)
-        template.setValueSerializer(new GenericJackson2JsonRedisSerializer());
+        // Jobs use the compact binary envelope; any other value (and old JSON jobs) still goes through JSON
+        JobCodec codec = new JobCodec();
+        template.setValueSerializer(codec);
+
+        // Same for stream entries: field names as strings, the job itself through the codec
+        template.setHashKeySerializer(new StringRedisSerializer());
+        template.setHashValueSerializer(codec);
         
         return template;
     }
+
+    // Shared subscriber connection for pub/sub channels (merchant cache invalidation, payment/refund status changes).
+    // Messages are handled on a small fixed pool rather than a new thread per message.
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                       @Value("${redis.listener-threads:4}") int threads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setThreadNamePrefix("redis-listener-");
+        executor.setDaemon(true);
+        executor.initialize();
+
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.setTaskExecutor(executor);
+        return container;
+    }
 }
\ No newline at end of file
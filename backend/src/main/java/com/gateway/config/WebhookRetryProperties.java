@@ -0,0 +1,69 @@
+package com.gateway.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Webhook retry schedule ({@code webhooks.retry.*}): attempt n waits {@code initialDelayMs × multiplier^(n-1)},
+ * capped at {@code maxDelayMs}, then spread by ±{@code jitter} so the retries after an outage do not arrive in waves.
+ * Every setting can be overridden per merchant id under {@code webhooks.retry.merchants}.
+ */
+@Data
+@ConfigurationProperties(prefix = "webhooks.retry")
+public class WebhookRetryProperties {
+
+    private int maxAttempts = 5;
+    private long initialDelayMs = 60000;
+    private double multiplier = 5.0;
+    private long maxDelayMs = 7200000;
+    private double jitter = 0.2; // fraction of the delay, either way
+
+    // WEBHOOK_RETRY_INTERVALS_TEST: seconds instead of minutes, for trying retries out by hand
+    private boolean testIntervals = false;
+    private long testInitialDelayMs = 5000;
+    private long testMaxDelayMs = 20000;
+
+    private Map<String, MerchantPolicy> merchants = new HashMap<>();
+
+    @Data
+    public static class MerchantPolicy {
+        private Integer maxAttempts;
+        private Long initialDelayMs;
+        private Double multiplier;
+        private Long maxDelayMs;
+        private Double jitter;
+    }
+
+    public int maxAttempts(String merchantId) {
+        MerchantPolicy policy = policy(merchantId);
+        return Math.max(1, policy != null && policy.getMaxAttempts() != null ? policy.getMaxAttempts() : maxAttempts);
+    }
+
+    /** Delay before the retry that follows failed attempt number {@code attempt} (1-based). */
+    public long delayMs(String merchantId, int attempt) {
+        MerchantPolicy policy = policy(merchantId);
+        long initial = testIntervals ? testInitialDelayMs
+                : policy != null && policy.getInitialDelayMs() != null ? policy.getInitialDelayMs() : initialDelayMs;
+        long max = testIntervals ? testMaxDelayMs
+                : policy != null && policy.getMaxDelayMs() != null ? policy.getMaxDelayMs() : maxDelayMs;
+        double factor = policy != null && policy.getMultiplier() != null ? policy.getMultiplier() : multiplier;
+        double spread = policy != null && policy.getJitter() != null ? policy.getJitter() : jitter;
+
+        double delay = Math.min(max, initial * Math.pow(Math.max(1.0, factor), Math.max(0, attempt - 1)));
+        return jittered((long) delay, spread);
+    }
+
+    public static long jittered(long delayMs, double jitter) {
+        if (jitter <= 0 || delayMs <= 0) return delayMs;
+        double offset = ThreadLocalRandom.current().nextDouble(-jitter, jitter);
+        return Math.max(0, Math.round(delayMs * (1 + offset)));
+    }
+
+    private MerchantPolicy policy(String merchantId) {
+        return merchantId != null ? merchants.get(merchantId) : null;
+    }
+}
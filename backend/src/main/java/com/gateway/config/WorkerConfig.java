@@ -0,0 +1,27 @@
+package com.gateway.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+@Profile("worker")
+@EnableConfigurationProperties({FairnessProperties.class, WebhookRetryProperties.class})
+public class WorkerConfig {
+
+    // Runs the DB/Redis follow-up work once the bank answers, so timer threads never block on I/O.
+    // The queue is unbounded on purpose: the workers' in-flight limits already bound how much can pile up here.
+    @Bean
+    public ThreadPoolTaskExecutor completionExecutor(@Value("${worker.completion-threads:16}") int threads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setThreadNamePrefix("completion-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+}
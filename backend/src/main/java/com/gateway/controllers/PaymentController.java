@@ -1,22 +1,35 @@
 package com.gateway.controllers;
 
+import com.gateway.auth.MerchantAuthenticator;
+import com.gateway.idempotency.IdempotencyReservation;
+import com.gateway.idempotency.IdempotencyStore;
+import com.gateway.ids.IdGenerator;
 import com.gateway.jobs.ProcessPaymentJob;
-import com.gateway.models.IdempotencyKey;
 import com.gateway.models.Merchant;
 import com.gateway.models.Payment;
-import com.gateway.repositories.IdempotencyKeyRepository;
-import com.gateway.repositories.MerchantRepository;
+import com.gateway.outbox.JobOutbox;
+import com.gateway.queue.Queues;
+import com.gateway.ratelimit.RateLimited;
 import com.gateway.repositories.PaymentRepository;
+import com.gateway.stats.PaymentStatusCounters;
+import com.gateway.status.StatusNotifications;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 import org.json.JSONObject;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/v1/payments")
@@ -24,20 +37,24 @@ import java.util.UUID;
 public class PaymentController {
 
     @Autowired private PaymentRepository paymentRepository;
-    @Autowired private MerchantRepository merchantRepository;
-    @Autowired private IdempotencyKeyRepository idempotencyKeyRepository;
-    @Autowired private RedisTemplate<String, Object> redisTemplate;
+    @Autowired private MerchantAuthenticator merchantAuthenticator;
+    @Autowired private IdempotencyStore idempotencyStore;
+    @Autowired private JobOutbox jobOutbox;
+    @Autowired private TransactionTemplate transactionTemplate;
+    @Autowired private PaymentStatusCounters paymentStatusCounters;
+    @Autowired private IdGenerator idGenerator;
+    @Autowired private StatusNotifications statusNotifications;
 
-    // Helper: Validate API Keys
+    @Value("${payments.batch.max-size:500}")
+    private int maxBatchSize;
+
+    // Helper: Validate API Keys (served from the in-process merchant cache)
     private Merchant validateAuth(String apiKey, String apiSecret) {
-        Merchant merchant = merchantRepository.findByApiKey(apiKey).orElse(null);
-        if (merchant != null && merchant.getApiSecret().equals(apiSecret)) {
-            return merchant;
-        }
-        return null;
+        return merchantAuthenticator.authenticate(apiKey, apiSecret);
     }
 
     @PostMapping
+    @RateLimited("payments")
     public ResponseEntity<?> createPayment(
             @RequestHeader("X-Api-Key") String apiKey,
             @RequestHeader("X-Api-Secret") String apiSecret,
@@ -49,21 +66,171 @@ public class PaymentController {
         if (merchant == null) return ResponseEntity.status(401).body("Invalid Credentials");
 
         // 2. Idempotency Check (Prevent duplicate charges)
+        String reservationToken = null;
         if (idempotencyKey != null) {
-            IdempotencyKey keyRecord = idempotencyKeyRepository.findById(new IdempotencyKey.IdempotencyKeyId(idempotencyKey, merchant.getId())).orElse(null);
-            if (keyRecord != null) {
-                if (keyRecord.getExpiresAt().isAfter(LocalDateTime.now())) {
-                    // Return Cached Response
-                    return ResponseEntity.status(201).body(keyRecord.getResponse());
-                } else {
-                    idempotencyKeyRepository.delete(keyRecord); // Expired, delete and retry
+            IdempotencyReservation reservation = idempotencyStore.reserve(merchant.getId(), idempotencyKey);
+            if (reservation.getState() == IdempotencyReservation.State.REPLAY) {
+                // Return Cached Response
+                return ResponseEntity.status(201).body(new JSONObject(reservation.getResponse()).toMap());
+            }
+            if (reservation.getState() == IdempotencyReservation.State.IN_FLIGHT) {
+                return ResponseEntity.status(409).body(Map.of("error", Map.of("code", "IDEMPOTENCY_CONFLICT", "description", "A request with this Idempotency-Key is still being processed")));
+            }
+            reservationToken = reservation.getToken();
+        }
+
+        JSONObject response;
+        try {
+            response = createPaymentRecord(merchant, request);
+        } catch (RuntimeException e) {
+            if (idempotencyKey != null) idempotencyStore.release(merchant.getId(), idempotencyKey, reservationToken); // Let the client retry
+            throw e;
+        }
+
+        // 6. Save Idempotency Key
+        if (idempotencyKey != null) {
+            idempotencyStore.complete(merchant.getId(), idempotencyKey, reservationToken, response.toString());
+        }
+
+        return ResponseEntity.status(201).body(response.toMap());
+    }
+
+    /**
+     * Creates up to payments.batch.max-size payments in one call. Each item may carry its own idempotency_key.
+     * Items are validated and idempotency-checked individually; the accepted ones are inserted in one
+     * transaction (JDBC batched) together with their jobs. The response lists one result per item, in order.
+     */
+    @PostMapping("/batch")
+    @RateLimited("batch")
+    public ResponseEntity<?> createPayments(
+            @RequestHeader("X-Api-Key") String apiKey,
+            @RequestHeader("X-Api-Secret") String apiSecret,
+            @RequestBody Map<String, Object> request) {
+
+        Merchant merchant = validateAuth(apiKey, apiSecret);
+        if (merchant == null) return ResponseEntity.status(401).body("Invalid Credentials");
+
+        if (!(request.get("payments") instanceof List<?> items) || items.isEmpty() || items.size() > maxBatchSize) {
+            return ResponseEntity.status(400).body(Map.of("error", Map.of("code", "BAD_REQUEST_ERROR",
+                    "description", "payments must be a list of 1 to " + maxBatchSize + " payment requests")));
+        }
+
+        // 1. Validate every item; invalid ones get their error and take no further part
+        List<Map<String, Object>> results = new ArrayList<>(Collections.nCopies(items.size(), null));
+        List<Integer> keyed = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
+        Set<String> seenKeys = new HashSet<>();
+        for (int i = 0; i < items.size(); i++) {
+            String error = validatePaymentRequest(items.get(i));
+            if (error != null) {
+                results.set(i, itemError(i, 400, "BAD_REQUEST_ERROR", error));
+                continue;
+            }
+            Object key = ((Map<?, ?>) items.get(i)).get("idempotency_key");
+            if (key == null) continue;
+            if (!seenKeys.add(key.toString())) {
+                results.set(i, itemError(i, 409, "IDEMPOTENCY_CONFLICT", "Idempotency key repeated within the batch"));
+                continue;
+            }
+            keyed.add(i);
+            keys.add(key.toString());
+        }
+
+        // 2. Idempotency for all keyed items in one round trip
+        List<IdempotencyReservation> reservations = idempotencyStore.reserveAll(merchant.getId(), keys);
+        List<String> acquiredKeys = new ArrayList<>();
+        String reservationToken = null; // Shared by the batch's reservations
+        Map<Integer, String> keyByIndex = new HashMap<>();
+        for (int k = 0; k < keyed.size(); k++) {
+            int i = keyed.get(k);
+            IdempotencyReservation reservation = reservations.get(k);
+            switch (reservation.getState()) {
+                case REPLAY -> results.set(i, itemCreated(i, new JSONObject(reservation.getResponse()).toMap()));
+                case IN_FLIGHT -> results.set(i, itemError(i, 409, "IDEMPOTENCY_CONFLICT", "A request with this Idempotency-Key is still being processed"));
+                case ACQUIRED -> {
+                    reservationToken = reservation.getToken();
+                    acquiredKeys.add(keys.get(k));
+                    keyByIndex.put(i, keys.get(k));
                 }
             }
         }
 
+        // 3. Insert the remaining payments and their jobs in one transaction
+        List<Integer> created = new ArrayList<>();
+        List<Payment> payments = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            if (results.get(i) != null) continue;
+            @SuppressWarnings("unchecked")
+            Map<String, Object> item = (Map<String, Object>) items.get(i);
+            created.add(i);
+            payments.add(newPayment(merchant, item));
+        }
+        try {
+            if (!payments.isEmpty()) {
+                List<ProcessPaymentJob> jobs = payments.stream().map(p -> new ProcessPaymentJob(p.getId())).toList();
+                transactionTemplate.executeWithoutResult(status -> {
+                    paymentRepository.saveAll(payments);
+                    jobOutbox.addAll(Queues.PAYMENTS, merchant.getId().toString(), jobs);
+                });
+            }
+        } catch (RuntimeException e) {
+            idempotencyStore.releaseAll(merchant.getId(), acquiredKeys, reservationToken); // Let the client retry
+            throw e;
+        }
+
+        // 4. Results, and the responses to replay for keyed items
+        Map<String, String> responses = new HashMap<>();
+        for (int n = 0; n < created.size(); n++) {
+            int i = created.get(n);
+            Payment payment = payments.get(n);
+            paymentStatusCounters.created(payment.getStatus());
+            JSONObject response = toResponse(payment);
+            results.set(i, itemCreated(i, response.toMap()));
+            String key = keyByIndex.get(i);
+            if (key != null) responses.put(key, response.toString());
+        }
+        idempotencyStore.completeAll(merchant.getId(), reservationToken, responses);
+
+        return ResponseEntity.ok(Map.of("data", results));
+    }
+
+    private static String validatePaymentRequest(Object item) {
+        if (!(item instanceof Map<?, ?> request)) return "Each payment must be an object";
+        if (!(request.get("amount") instanceof Integer amount) || amount <= 0) return "amount must be a positive integer";
+        if (!(request.get("currency") instanceof String currency) || currency.length() != 3) return "currency must be a 3-letter code";
+        if (!(request.get("order_id") instanceof String orderId) || orderId.isBlank()) return "order_id is required";
+        Object method = request.get("method");
+        if (!"upi".equals(method) && !"card".equals(method)) return "method must be upi or card";
+        if ("upi".equals(method) && !(request.get("vpa") instanceof String)) return "vpa is required for upi";
+        return null;
+    }
+
+    private static Map<String, Object> itemCreated(int index, Map<String, Object> payment) {
+        return Map.of("index", index, "status", 201, "payment", payment);
+    }
+
+    private static Map<String, Object> itemError(int index, int status, String code, String description) {
+        return Map.of("index", index, "status", status, "error", Map.of("code", code, "description", description));
+    }
+
+    private JSONObject createPaymentRecord(Merchant merchant, Map<String, Object> request) {
         // 3. Create Payment Record
+        Payment payment = newPayment(merchant, request);
+
+        // 4. Send to Worker: the job commits with the payment and is relayed to Redis afterwards
+        transactionTemplate.executeWithoutResult(status -> {
+            paymentRepository.save(payment);
+            jobOutbox.add(Queues.PAYMENTS, merchant.getId().toString(), new ProcessPaymentJob(payment.getId()));
+        });
+        paymentStatusCounters.created(payment.getStatus());
+
+        // 5. Construct Response
+        return toResponse(payment);
+    }
+
+    private Payment newPayment(Merchant merchant, Map<String, Object> request) {
         Payment payment = new Payment();
-        payment.setId("pay_" + UUID.randomUUID().toString().replace("-", "").substring(0, 15));
+        payment.setId(idGenerator.paymentId());
         payment.setMerchant(merchant);
         payment.setOrderId((String) request.get("order_id"));
         payment.setAmount((Integer) request.get("amount"));
@@ -72,35 +239,55 @@ public class PaymentController {
         payment.setVpa((String) request.get("vpa"));
         payment.setStatus("pending"); // Initial state
         payment.setCaptured(false);
-        
-        paymentRepository.save(payment);
-
-        // 4. Send to Worker (Redis)
-        redisTemplate.opsForList().leftPush("queue:payments", new ProcessPaymentJob(payment.getId()));
+        return payment;
+    }
 
-        // 5. Construct Response
+    public static JSONObject toResponse(Payment payment) {
         JSONObject response = new JSONObject();
         response.put("id", payment.getId());
         response.put("order_id", payment.getOrderId());
         response.put("amount", payment.getAmount());
         response.put("status", payment.getStatus());
         response.put("created_at", payment.getCreatedAt().toString());
+        return response;
+    }
 
-        // 6. Save Idempotency Key
-        if (idempotencyKey != null) {
-            IdempotencyKey newKey = new IdempotencyKey();
-            newKey.setKey(idempotencyKey);
-            newKey.setMerchantId(merchant.getId());
-            newKey.setResponse(response.toString());
-            newKey.setCreatedAt(LocalDateTime.now());
-            newKey.setExpiresAt(LocalDateTime.now().plusHours(24));
-            idempotencyKeyRepository.save(newKey);
-        }
+    /**
+     * ?wait=N holds the response for up to N seconds (at most status.wait.max-seconds) while the payment is pending,
+     * and answers as soon as the worker publishes its outcome. Clients loop on this instead of polling.
+     */
+    @GetMapping("/{id}")
+    @RateLimited("reads")
+    public DeferredResult<ResponseEntity<?>> getPayment(
+            @PathVariable String id,
+            @RequestParam(defaultValue = "0") int wait,
+            @RequestHeader("X-Api-Key") String apiKey,
+            @RequestHeader("X-Api-Secret") String apiSecret) {
 
-        return ResponseEntity.status(201).body(response.toMap());
+        Merchant merchant = validateAuth(apiKey, apiSecret);
+        if (merchant == null) return StatusNotifications.completed(ResponseEntity.status(401).body("Invalid Credentials"));
+
+        return statusNotifications.respond(StatusNotifications.PAYMENTS_CHANNEL, id, wait,
+                () -> paymentRepository.findById(id).filter(payment -> payment.getMerchant().getId().equals(merchant.getId())),
+                payment -> "pending".equals(payment.getStatus()),
+                payment -> ResponseEntity.ok(toDetailResponse(payment).toMap()),
+                ResponseEntity.status(404).body("Payment not found"));
+    }
+
+    private static JSONObject toDetailResponse(Payment payment) {
+        JSONObject response = toResponse(payment);
+        response.put("currency", payment.getCurrency());
+        response.put("method", payment.getMethod());
+        response.put("captured", payment.getCaptured());
+        if (payment.getErrorCode() != null) {
+            response.put("error_code", payment.getErrorCode());
+            response.put("error_description", payment.getErrorDescription());
+        }
+        return response;
     }
 
     @PostMapping("/{id}/capture")
+    @RateLimited("payments")
     public ResponseEntity<?> capturePayment(
             @PathVariable String id,
             @RequestHeader("X-Api-Key") String apiKey,
@@ -109,17 +296,21 @@ public class PaymentController {
         Merchant merchant = validateAuth(apiKey, apiSecret);
         if (merchant == null) return ResponseEntity.status(401).body("Invalid Credentials");
 
-        Payment payment = paymentRepository.findById(id).orElse(null);
-        if (payment == null) return ResponseEntity.status(404).body("Payment not found");
+        // Loaded and changed in one transaction, so the change is flushed as a single UPDATE of the touched columns
+        return transactionTemplate.execute(status -> {
+            Payment payment = paymentRepository.findById(id).orElse(null);
+            if (payment == null || !payment.getMerchant().getId().equals(merchant.getId())) {
+                return ResponseEntity.status(404).body("Payment not found");
+            }
 
-        if (!"success".equals(payment.getStatus())) {
-            return ResponseEntity.status(400).body(Map.of("error", Map.of("code", "BAD_REQUEST_ERROR", "description", "Payment not in capturable state")));
-        }
+            if (!"success".equals(payment.getStatus())) {
+                return ResponseEntity.status(400).body(Map.of("error", Map.of("code", "BAD_REQUEST_ERROR", "description", "Payment not in capturable state")));
+            }
 
-        payment.setCaptured(true);
-        payment.setUpdatedAt(LocalDateTime.now());
-        paymentRepository.save(payment);
+            payment.setCaptured(true);
+            payment.setUpdatedAt(LocalDateTime.now());
 
-        return ResponseEntity.ok(Map.of("captured", true, "status", "success", "id", payment.getId()));
+            return ResponseEntity.ok(Map.of("captured", true, "status", "success", "id", payment.getId()));
+        });
     }
 }
\ No newline at end of file
@@ -1,21 +1,25 @@
 package com.gateway.controllers;
 
+import com.gateway.auth.MerchantAuthenticator;
+import com.gateway.ids.IdGenerator;
 import com.gateway.jobs.ProcessRefundJob;
 import com.gateway.models.Merchant;
 import com.gateway.models.Payment;
 import com.gateway.models.Refund;
-import com.gateway.repositories.MerchantRepository;
+import com.gateway.outbox.JobOutbox;
+import com.gateway.queue.Queues;
+import com.gateway.ratelimit.RateLimited;
 import com.gateway.repositories.PaymentRepository;
 import com.gateway.repositories.RefundRepository;
+import com.gateway.status.StatusNotifications;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import java.time.LocalDateTime;
-import java.util.List;
 import java.util.Map;
-import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/v1")
@@ -24,16 +28,18 @@ public class RefundController {
 
     @Autowired private PaymentRepository paymentRepository;
     @Autowired private RefundRepository refundRepository;
-    @Autowired private MerchantRepository merchantRepository;
-    @Autowired private RedisTemplate<String, Object> redisTemplate;
+    @Autowired private MerchantAuthenticator merchantAuthenticator;
+    @Autowired private JobOutbox jobOutbox;
+    @Autowired private TransactionTemplate transactionTemplate;
+    @Autowired private IdGenerator idGenerator;
+    @Autowired private StatusNotifications statusNotifications;
 
     private Merchant validateAuth(String apiKey, String apiSecret) {
-        return merchantRepository.findByApiKey(apiKey)
-                .filter(m -> m.getApiSecret().equals(apiSecret))
-                .orElse(null);
+        return merchantAuthenticator.authenticate(apiKey, apiSecret);
     }
 
     @PostMapping("/payments/{paymentId}/refunds")
+    @RateLimited("refunds")
     public ResponseEntity<?> createRefund(
             @PathVariable String paymentId,
             @RequestHeader("X-Api-Key") String apiKey,
@@ -52,43 +58,55 @@ public class RefundController {
             return ResponseEntity.status(400).body(Map.of("error", Map.of("code", "BAD_REQUEST_ERROR", "description", "Payment not successful")));
         }
 
-        // Calculate if refund is possible
-        List<Refund> existingRefunds = refundRepository.findByPaymentId(paymentId);
-        int totalRefunded = existingRefunds.stream().mapToInt(Refund::getAmount).sum();
-        int requestedAmount = (Integer) request.get("amount");
-
-        if (totalRefunded + requestedAmount > payment.getAmount()) {
-             return ResponseEntity.status(400).body(Map.of("error", Map.of("code", "BAD_REQUEST_ERROR", "description", "Refund amount exceeds available amount")));
+        Object amount = request.get("amount");
+        if (!(amount instanceof Integer requestedAmount) || requestedAmount <= 0) {
+            return ResponseEntity.status(400).body(Map.of("error", Map.of("code", "BAD_REQUEST_ERROR", "description", "Refund amount must be a positive integer")));
         }
 
-        // Create Refund
-        Refund refund = new Refund();
-        refund.setId("rfnd_" + UUID.randomUUID().toString().replace("-", "").substring(0, 16));
-        refund.setPaymentId(paymentId);
-        refund.setMerchantId(merchant.getId());
-        refund.setAmount(requestedAmount);
-        refund.setReason((String) request.get("reason"));
-        refund.setStatus("pending");
-        
-        refundRepository.save(refund);
+        // The ledger update, the refund row and its job commit together, so a failed insert gives the amount back
+        Refund refund = transactionTemplate.execute(status -> {
+            // Single conditional UPDATE: concurrent partial refunds can never exceed the payment amount
+            if (paymentRepository.addRefundedAmount(paymentId, requestedAmount) == 0) {
+                return null;
+            }
+
+            Refund created = new Refund();
+            created.setId(idGenerator.refundId());
+            created.setPaymentId(paymentId);
+            created.setMerchantId(merchant.getId());
+            created.setAmount(requestedAmount);
+            created.setReason((String) request.get("reason"));
+            created.setStatus("pending");
+            refundRepository.save(created);
 
-        // Send to Worker
-        redisTemplate.opsForList().leftPush("queue:refunds", new ProcessRefundJob(refund.getId()));
+            // Send to Worker, once committed
+            jobOutbox.add(Queues.REFUNDS, merchant.getId().toString(), new ProcessRefundJob(created.getId()));
+            return created;
+        });
+
+        if (refund == null) {
+            return ResponseEntity.status(400).body(Map.of("error", Map.of("code", "BAD_REQUEST_ERROR", "description", "Refund amount exceeds available amount")));
+        }
 
         return ResponseEntity.status(201).body(refund);
     }
 
+    // ?wait=N holds the response for up to N seconds while the refund is pending, until it is processed
     @GetMapping("/refunds/{id}")
-    public ResponseEntity<?> getRefund(
+    @RateLimited("reads")
+    public DeferredResult<ResponseEntity<?>> getRefund(
             @PathVariable String id,
+            @RequestParam(defaultValue = "0") int wait,
             @RequestHeader("X-Api-Key") String apiKey,
             @RequestHeader("X-Api-Secret") String apiSecret) {
-        
-        if (validateAuth(apiKey, apiSecret) == null) return ResponseEntity.status(401).build();
-        
-        Refund refund = refundRepository.findById(id).orElse(null);
-        if (refund == null) return ResponseEntity.status(404).build();
-        
-        return ResponseEntity.ok(refund);
+
+        Merchant merchant = validateAuth(apiKey, apiSecret);
+        if (merchant == null) return StatusNotifications.completed(ResponseEntity.status(401).build());
+
+        return statusNotifications.respond(StatusNotifications.REFUNDS_CHANNEL, id, wait,
+                () -> refundRepository.findById(id).filter(refund -> merchant.getId().equals(refund.getMerchantId())),
+                refund -> "pending".equals(refund.getStatus()),
+                ResponseEntity::ok,
+                ResponseEntity.status(404).build());
     }
 }
\ No newline at end of file
@@ -1,14 +1,22 @@
 package com.gateway.controllers;
 
-import com.gateway.repositories.PaymentRepository;
+import com.gateway.auth.MerchantAuthenticator;
+import com.gateway.queue.DelayQueue;
+import com.gateway.queue.JobQueue;
+import com.gateway.queue.Queues;
+import com.gateway.stats.JobStatusFeed;
+import com.gateway.workers.WorkerRunner;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 @RestController
@@ -16,36 +24,45 @@ import java.util.Map;
 @CrossOrigin // Fixes the "Offline" status on the Dashboard
 public class TestController {
 
-    @Autowired private RedisTemplate<String, Object> redisTemplate;
-    @Autowired private PaymentRepository paymentRepository; // Inject the repository
+    @Autowired private JobQueue jobQueue;
+    @Autowired private DelayQueue delayQueue;
+    @Autowired private MerchantAuthenticator merchantAuthenticator;
+    @Autowired private JobStatusFeed jobStatusFeed;
+    @Autowired(required = false) private WorkerRunner workerRunner; // Only present in the worker profile
 
     @GetMapping("/jobs/status")
     public ResponseEntity<?> getJobStatus() {
-        // 1. Get Real Pending Count (Jobs waiting in Redis)
-        Long paymentsQueue = redisTemplate.opsForList().size("queue:payments");
-        Long refundsQueue = redisTemplate.opsForList().size("queue:refunds");
-        Long webhooksQueue = redisTemplate.opsForList().size("queue:webhooks");
-        
-        // Sum of all queues
-        long pendingInRedis = (paymentsQueue != null ? paymentsQueue : 0) + 
-                              (refundsQueue != null ? refundsQueue : 0) + 
-                              (webhooksQueue != null ? webhooksQueue : 0);
-
-        // 2. Get Completed Count (Success + Failed in DB)
-        long successCount = paymentRepository.countByStatus("success");
-        long failedCount = paymentRepository.countByStatus("failed");
-        long completedTotal = successCount + failedCount;
-
-        // 3. Calculate Processing Count
-        // Logic: Items in DB that are 'pending' BUT are no longer in Redis means a Worker is holding them.
-        long totalPendingInDb = paymentRepository.countByStatus("pending");
-        long processingCount = Math.max(0, totalPendingInDb - (paymentsQueue != null ? paymentsQueue : 0));
+        return ResponseEntity.ok(jobStatusFeed.currentStatus());
+    }
+
+    // Same numbers as /jobs/status: a full "status" event on connect, then "delta" events with changed fields only
+    @GetMapping(value = "/jobs/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamJobStatus() throws IOException {
+        return jobStatusFeed.subscribe();
+    }
 
+    @GetMapping("/queues")
+    public ResponseEntity<?> getQueueStats() {
+        Map<String, Object> queues = new LinkedHashMap<>();
+        for (String queue : Queues.ALL) {
+            queues.put(queue, jobQueue.stats(queue));
+        }
         return ResponseEntity.ok(Map.of(
-            "pending", pendingInRedis,
-            "processing", processingCount,
-            "completed", completedTotal,
-            "worker_status", "running"
+            "streams", queues,
+            "delayed_webhook_retries", delayQueue.size(Queues.WEBHOOKS)
         ));
     }
+
+    @GetMapping("/auth-cache")
+    public ResponseEntity<?> getAuthCacheStats() {
+        return ResponseEntity.ok(merchantAuthenticator.stats());
+    }
+
+    @GetMapping("/workers")
+    public ResponseEntity<?> getWorkerPools() {
+        if (workerRunner == null) {
+            return ResponseEntity.ok(Map.of("worker_status", "not running in this instance"));
+        }
+        return ResponseEntity.ok(Map.of("worker_status", "running", "pools", workerRunner.poolStats()));
+    }
 }
\ No newline at end of file
@@ -1,15 +1,26 @@
 package com.gateway.controllers;
 
+import com.gateway.auth.MerchantAuthenticator;
 import com.gateway.jobs.DeliverWebhookJob;
 import com.gateway.models.Merchant;
 import com.gateway.models.WebhookLog;
-import com.gateway.repositories.MerchantRepository;
+import com.gateway.outbox.JobOutbox;
+import com.gateway.queue.Queues;
+import com.gateway.ratelimit.RateLimited;
 import com.gateway.repositories.WebhookLogRepository;
+import com.gateway.repositories.WebhookLogSummary;
+import com.gateway.webhooks.WebhookLogArchive;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.*;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -20,38 +31,111 @@ import java.util.UUID;
 public class WebhookController {
 
     @Autowired private WebhookLogRepository webhookLogRepository;
-    @Autowired private MerchantRepository merchantRepository;
-    @Autowired private RedisTemplate<String, Object> redisTemplate;
+    @Autowired private MerchantAuthenticator merchantAuthenticator;
+    @Autowired private JobOutbox jobOutbox;
+    @Autowired private TransactionTemplate transactionTemplate;
+    @Autowired private WebhookLogArchive webhookLogArchive;
+
+    private static final int MAX_PAGE_SIZE = 200;
+
+    // Opaque to clients: base64url of "<createdAt>|<id>" of the last row on the previous page
+    private record Cursor(LocalDateTime createdAt, UUID id) {
+        String encode() {
+            String raw = createdAt + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String cursor) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int sep = raw.indexOf('|');
+                return new Cursor(LocalDateTime.parse(raw.substring(0, sep)), UUID.fromString(raw.substring(sep + 1)));
+            } catch (RuntimeException e) {
+                return null;
+            }
+        }
+    }
 
     @GetMapping
+    @RateLimited("webhooks")
     public ResponseEntity<?> listWebhooks(
             @RequestHeader("X-Api-Key") String apiKey,
-            @RequestHeader("X-Api-Secret") String apiSecret) {
+            @RequestHeader("X-Api-Secret") String apiSecret,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String event,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
 
-        Merchant merchant = merchantRepository.findByApiKey(apiKey).orElse(null);
-        if (merchant == null || !merchant.getApiSecret().equals(apiSecret)) {
+        Merchant merchant = merchantAuthenticator.authenticate(apiKey, apiSecret);
+        if (merchant == null) {
             return ResponseEntity.status(401).build();
         }
 
-        List<WebhookLog> logs = webhookLogRepository.findByMerchantIdOrderByCreatedAtDesc(merchant.getId());
-        return ResponseEntity.ok(Map.of("data", logs, "total", logs.size()));
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        // One extra row tells us whether there is a next page without a count query
+        Pageable pageable = PageRequest.of(0, pageSize + 1);
+
+        List<WebhookLogSummary> logs;
+        if (cursor == null || cursor.isBlank()) {
+            logs = webhookLogRepository.findPage(merchant.getId(), status, event, pageable);
+        } else {
+            Cursor after = Cursor.decode(cursor);
+            if (after == null) {
+                return ResponseEntity.status(400).body(Map.of("error", Map.of("code", "BAD_REQUEST_ERROR", "description", "Invalid cursor")));
+            }
+            logs = webhookLogRepository.findPageAfter(merchant.getId(), after.createdAt(), after.id(), status, event, pageable);
+        }
+
+        boolean hasMore = logs.size() > pageSize;
+        if (hasMore) logs = logs.subList(0, pageSize);
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("data", logs);
+        body.put("has_more", hasMore);
+        if (hasMore) {
+            WebhookLogSummary last = logs.get(logs.size() - 1);
+            body.put("next_cursor", new Cursor(last.getCreatedAt(), last.getId()).encode());
+        }
+        return ResponseEntity.ok(body);
+    }
+
+    // Full log including payload and response body; logs archived by the retention job are read from their archive file
+    @GetMapping("/{id}")
+    @RateLimited("webhooks")
+    public ResponseEntity<?> getWebhook(
+            @PathVariable UUID id,
+            @RequestHeader("X-Api-Key") String apiKey,
+            @RequestHeader("X-Api-Secret") String apiSecret) {
+
+        Merchant merchant = merchantAuthenticator.authenticate(apiKey, apiSecret);
+        if (merchant == null) return ResponseEntity.status(401).build();
+
+        WebhookLog log = webhookLogRepository.findById(id).or(() -> webhookLogArchive.find(id)).orElse(null);
+        if (log == null || !merchant.getId().equals(log.getMerchantId())) return ResponseEntity.status(404).build();
+
+        return ResponseEntity.ok(log);
     }
 
     @PostMapping("/{id}/retry")
+    @RateLimited("webhooks")
     public ResponseEntity<?> retryWebhook(
             @PathVariable UUID id,
             @RequestHeader("X-Api-Key") String apiKey,
             @RequestHeader("X-Api-Secret") String apiSecret) {
 
-        // Validate auth... (Simplified for brevity)
+        Merchant merchant = merchantAuthenticator.authenticate(apiKey, apiSecret);
+        if (merchant == null) return ResponseEntity.status(401).build();
+
         WebhookLog log = webhookLogRepository.findById(id).orElse(null);
-        if (log == null) return ResponseEntity.status(404).build();
+        if (log == null || !merchant.getId().equals(log.getMerchantId())) return ResponseEntity.status(404).build();
 
         log.setStatus("pending");
         log.setAttempts(0); // Reset attempts
-        webhookLogRepository.save(log);
-
-        redisTemplate.opsForList().leftPush("queue:webhooks", new DeliverWebhookJob(log.getId()));
+        log.setNextRetryAt(null); // Deliver now, not at the old retry time
+        transactionTemplate.executeWithoutResult(status -> {
+            webhookLogRepository.save(log);
+            jobOutbox.add(Queues.WEBHOOKS, merchant.getId().toString(), new DeliverWebhookJob(log.getId(), log.getCreatedAt()));
+        });
 
         return ResponseEntity.ok(Map.of("status", "pending", "message", "Retry scheduled"));
     }
@@ -0,0 +1,31 @@
+package com.gateway.idempotency;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class IdempotencyReservation {
+
+    public enum State {
+        ACQUIRED,  // First request with this key: go ahead and create
+        REPLAY,    // Already done: return the stored response
+        IN_FLIGHT  // Another request with this key is still running
+    }
+
+    private State state;
+    private String response; // Only set for REPLAY
+    private String token;    // Only set for ACQUIRED: pass it to complete or release
+
+    static IdempotencyReservation acquired(String token) {
+        return new IdempotencyReservation(State.ACQUIRED, null, token);
+    }
+
+    static IdempotencyReservation replay(String response) {
+        return new IdempotencyReservation(State.REPLAY, response, null);
+    }
+
+    static IdempotencyReservation inFlight() {
+        return new IdempotencyReservation(State.IN_FLIGHT, null, null);
+    }
+}
@@ -0,0 +1,259 @@
+package com.gateway.idempotency;
+
+import com.gateway.models.IdempotencyKey;
+import com.gateway.repositories.IdempotencyKeyRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Idempotency-Key handling in Redis, backed by Postgres.
+ * The first request for a key reserves it with SET NX under a token of its own (in flight, short TTL in case the
+ * request dies); once it finishes, the response replaces the token for 24 hours. Duplicates replay that response,
+ * or get a conflict while the first one is still running. Only the holder of the token can complete or release the
+ * reservation, so a request that outlived its reservation cannot remove the one a later request took over.
+ *
+ * Responses are also written to idempotency_keys in the background. A key Redis does not know (flushed, evicted) is
+ * looked up there before it counts as new, so a replay after losing Redis still returns the original payment.
+ */
+@Component
+public class IdempotencyStore {
+
+    private static final String IN_FLIGHT_PREFIX = "inflight:";
+    private static final String LEGACY_IN_FLIGHT = "__in_flight__"; // Written by instances from before tokens
+
+    // Deletes the reservation only if it is still ours (our token)
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end return 0", Long.class);
+
+    // Stores the response if the key still holds our token, or nothing (the reservation expired and nobody took it);
+    // never over another request's reservation or response
+    private static final String COMPLETE_SCRIPT = """
+            local current = redis.call('GET', KEYS[1])
+            if current == ARGV[1] or not current then
+                redis.call('SET', KEYS[1], ARGV[2], 'EX', ARGV[3])
+                return 1
+            end
+            return 0
+            """;
+    private static final RedisScript<Long> COMPLETE = new DefaultRedisScript<>(COMPLETE_SCRIPT, Long.class);
+
+    @Autowired private StringRedisTemplate stringRedisTemplate;
+    @Autowired private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Value("${idempotency.ttl-hours:24}")
+    private long ttlHours;
+
+    @Value("${idempotency.lock-ttl-seconds:30}")
+    private long lockTtlSeconds;
+
+    // Copies are written off the request thread; if the DB falls this far behind, requests write their own
+    private final ThreadPoolExecutor persistExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(10_000), r -> {
+                Thread t = new Thread(r, "idempotency-persist");
+                t.setDaemon(true);
+                return t;
+            });
+
+    /**
+     * Reserves the key, or says why not. Does not wait for a request still holding it: that is a conflict the
+     * client retries, so no request thread is parked on another request.
+     */
+    public IdempotencyReservation reserve(UUID merchantId, String key) {
+        String redisKey = redisKey(merchantId, key);
+        String token = newToken();
+        // A second pass only if the holder released the key between our SET and GET
+        for (int attempt = 0; attempt < 2; attempt++) {
+            Boolean acquired = stringRedisTemplate.opsForValue().setIfAbsent(redisKey, token, Duration.ofSeconds(lockTtlSeconds));
+            if (Boolean.TRUE.equals(acquired)) {
+                IdempotencyKey stored = storedRecords(merchantId, List.of(key)).get(key);
+                if (stored == null) return IdempotencyReservation.acquired(token);
+                restore(merchantId, List.of(stored), token);
+                return IdempotencyReservation.replay(stored.getResponse());
+            }
+
+            String value = stringRedisTemplate.opsForValue().get(redisKey);
+            if (value == null) continue;
+            return isInFlight(value) ? IdempotencyReservation.inFlight() : IdempotencyReservation.replay(value);
+        }
+        return IdempotencyReservation.inFlight();
+    }
+
+    /**
+     * Batch form of {@link #reserve}: reserves all keys in one round trip (and one DB read for the acquired ones).
+     * All reservations of one call share a token. Results are in the order of {@code keys}.
+     */
+    public List<IdempotencyReservation> reserveAll(UUID merchantId, List<String> keys) {
+        if (keys.isEmpty()) return List.of();
+        String token = newToken();
+        Expiration lockTtl = Expiration.seconds(lockTtlSeconds);
+        List<Object> acquired = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection redis = (StringRedisConnection) connection;
+            for (String key : keys) {
+                redis.set(redisKey(merchantId, key), token, lockTtl, RedisStringCommands.SetOption.SET_IF_ABSENT);
+            }
+            return null;
+        });
+
+        List<String> taken = new ArrayList<>();
+        List<String> reserved = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            if (Boolean.TRUE.equals(acquired.get(i))) {
+                reserved.add(keys.get(i));
+            } else {
+                taken.add(redisKey(merchantId, keys.get(i)));
+            }
+        }
+        List<String> existing = taken.isEmpty() ? List.of() : stringRedisTemplate.opsForValue().multiGet(taken);
+        Map<String, IdempotencyKey> stored = storedRecords(merchantId, reserved);
+        if (!stored.isEmpty()) restore(merchantId, stored.values(), token);
+
+        List<IdempotencyReservation> reservations = new ArrayList<>(keys.size());
+        int next = 0;
+        for (int i = 0; i < keys.size(); i++) {
+            if (Boolean.TRUE.equals(acquired.get(i))) {
+                IdempotencyKey record = stored.get(keys.get(i));
+                reservations.add(record != null ? IdempotencyReservation.replay(record.getResponse()) : IdempotencyReservation.acquired(token));
+                continue;
+            }
+            String value = existing.get(next++);
+            // A key released in between counts as in flight; the client retries that item
+            reservations.add(value == null || isInFlight(value)
+                    ? IdempotencyReservation.inFlight()
+                    : IdempotencyReservation.replay(value));
+        }
+        return reservations;
+    }
+
+    public void complete(UUID merchantId, String key, String token, String response) {
+        Long stored = stringRedisTemplate.execute(COMPLETE, List.of(redisKey(merchantId, key)),
+                token, response, String.valueOf(TimeUnit.HOURS.toSeconds(ttlHours)));
+        if (stored == null || stored == 0) {
+            System.err.println("Idempotency key " + key + " was taken over before its response was stored");
+        }
+        persist(List.of(record(merchantId, key, response)));
+    }
+
+    /**
+     * Batch form of {@link #complete}: one pipelined round trip to Redis, one batched write to Postgres.
+     */
+    public void completeAll(UUID merchantId, String token, Map<String, String> responses) {
+        if (responses.isEmpty()) return;
+        String ttlSeconds = String.valueOf(TimeUnit.HOURS.toSeconds(ttlHours));
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection redis = (StringRedisConnection) connection;
+            responses.forEach((key, response) ->
+                    redis.eval(COMPLETE_SCRIPT, ReturnType.INTEGER, 1, redisKey(merchantId, key), token, response, ttlSeconds));
+            return null;
+        });
+
+        List<IdempotencyKey> records = new ArrayList<>(responses.size());
+        responses.forEach((key, response) -> records.add(record(merchantId, key, response)));
+        persist(records);
+    }
+
+    /**
+     * Gives the key back after a failed request so a retry can try again; a no-op if it is no longer ours.
+     */
+    public void release(UUID merchantId, String key, String token) {
+        stringRedisTemplate.execute(RELEASE_SCRIPT, List.of(redisKey(merchantId, key)), token);
+    }
+
+    public void releaseAll(UUID merchantId, List<String> keys, String token) {
+        for (String key : keys) {
+            release(merchantId, key, token);
+        }
+    }
+
+    // Unexpired responses Postgres has for keys Redis did not know, by key
+    private Map<String, IdempotencyKey> storedRecords(UUID merchantId, List<String> keys) {
+        if (keys.isEmpty()) return Map.of();
+        List<IdempotencyKey.IdempotencyKeyId> ids = keys.stream().map(key -> new IdempotencyKey.IdempotencyKeyId(key, merchantId)).toList();
+        LocalDateTime now = LocalDateTime.now();
+        Map<String, IdempotencyKey> records = new HashMap<>();
+        for (IdempotencyKey record : idempotencyKeyRepository.findAllById(ids)) {
+            if (record.getExpiresAt().isAfter(now)) records.put(record.getKey(), record);
+        }
+        return records;
+    }
+
+    // Puts responses found in Postgres back in Redis, over our reservations, for the rest of their TTL
+    private void restore(UUID merchantId, Iterable<IdempotencyKey> records, String token) {
+        LocalDateTime now = LocalDateTime.now();
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection redis = (StringRedisConnection) connection;
+            for (IdempotencyKey record : records) {
+                long ttlSeconds = Math.max(1, Duration.between(now, record.getExpiresAt()).toSeconds());
+                redis.eval(COMPLETE_SCRIPT, ReturnType.INTEGER, 1, redisKey(merchantId, record.getKey()),
+                        token, record.getResponse(), String.valueOf(ttlSeconds));
+            }
+            return null;
+        });
+    }
+
+    private IdempotencyKey record(UUID merchantId, String key, String response) {
+        LocalDateTime now = LocalDateTime.now();
+        IdempotencyKey record = new IdempotencyKey();
+        record.setKey(key);
+        record.setMerchantId(merchantId);
+        record.setResponse(response);
+        record.setCreatedAt(now);
+        record.setExpiresAt(now.plusHours(ttlHours));
+        return record;
+    }
+
+    private void persist(List<IdempotencyKey> records) {
+        Runnable save = () -> {
+            try {
+                idempotencyKeyRepository.saveAll(records);
+            } catch (Exception e) {
+                // Replays of these keys now depend on Redis alone
+                System.err.println("Failed to persist " + records.size() + " idempotency keys: " + e.getMessage());
+            }
+        };
+        try {
+            persistExecutor.execute(save);
+        } catch (RejectedExecutionException e) {
+            save.run(); // Queue full: slow this request down rather than lose the copy
+        }
+    }
+
+    private static String newToken() {
+        return IN_FLIGHT_PREFIX + UUID.randomUUID();
+    }
+
+    private static boolean isInFlight(String value) {
+        return value.startsWith(IN_FLIGHT_PREFIX) || LEGACY_IN_FLIGHT.equals(value);
+    }
+
+    private static String redisKey(UUID merchantId, String key) {
+        return "idem:" + merchantId + ":" + key;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        persistExecutor.shutdown();
+        persistExecutor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+}
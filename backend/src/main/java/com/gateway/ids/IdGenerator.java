@@ -0,0 +1,11 @@
+package com.gateway.ids;
+
+/**
+ * Public ids for payments and refunds: a type prefix plus a unique suffix.
+ */
+public interface IdGenerator {
+
+    String paymentId();
+
+    String refundId();
+}
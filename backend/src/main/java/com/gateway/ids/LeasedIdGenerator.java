@@ -0,0 +1,115 @@
+package com.gateway.ids;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * {@link SnowflakeIdGenerator} whose node id is leased from Redis ({@code ids:node:<n>}, SET NX with a TTL),
+ * so API and worker instances never share one. The lease is renewed in the background. If it cannot be renewed
+ * before it expires, another instance may take the node, so this one refuses to issue ids until it holds a lease again.
+ */
+@Component
+public class LeasedIdGenerator implements IdGenerator {
+
+    private static final String KEY_PREFIX = "ids:node:";
+
+    // Extends the lease only if it is still ours
+    private static final RedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('PEXPIRE', KEYS[1], ARGV[2]) end return 0", Long.class);
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end return 0", Long.class);
+
+    @Autowired private StringRedisTemplate stringRedisTemplate;
+
+    @Value("${ids.node-lease-ttl-seconds:60}")
+    private long leaseTtlSeconds;
+
+    private final String owner = UUID.randomUUID().toString();
+    private volatile SnowflakeIdGenerator generator;
+    private volatile int nodeId = -1;
+    private volatile long leaseValidUntil; // System.currentTimeMillis() deadline, with margin
+
+    @PostConstruct
+    public void start() {
+        acquire();
+    }
+
+    @Override
+    public String paymentId() {
+        return current().paymentId();
+    }
+
+    @Override
+    public String refundId() {
+        return current().refundId();
+    }
+
+    private SnowflakeIdGenerator current() {
+        if (System.currentTimeMillis() >= leaseValidUntil) {
+            throw new IllegalStateException("ID node lease expired; not issuing ids until it is renewed");
+        }
+        return generator;
+    }
+
+    // Renewed three times per TTL, so a single missed renewal is harmless
+    @Scheduled(fixedDelayString = "#{${ids.node-lease-ttl-seconds:60} * 1000 / 3}")
+    public void renew() {
+        long attemptedAt = System.currentTimeMillis();
+        try {
+            Long renewed = stringRedisTemplate.execute(RENEW_SCRIPT, List.of(KEY_PREFIX + nodeId),
+                    owner, String.valueOf(Duration.ofSeconds(leaseTtlSeconds).toMillis()));
+            if (renewed != null && renewed == 1) {
+                leaseValidUntil = validUntil(attemptedAt);
+                return;
+            }
+            System.err.println("⚠️ Lost ID node lease " + nodeId + ", acquiring a new one");
+            acquire();
+        } catch (Exception e) {
+            System.err.println("Failed to renew ID node lease " + nodeId + ": " + e.getMessage());
+        }
+    }
+
+    private void acquire() {
+        long attemptedAt = System.currentTimeMillis();
+        int start = ThreadLocalRandom.current().nextInt(SnowflakeIdGenerator.MAX_NODES);
+        for (int i = 0; i < SnowflakeIdGenerator.MAX_NODES; i++) {
+            int candidate = (start + i) % SnowflakeIdGenerator.MAX_NODES;
+            Boolean acquired = stringRedisTemplate.opsForValue()
+                    .setIfAbsent(KEY_PREFIX + candidate, owner, Duration.ofSeconds(leaseTtlSeconds));
+            if (Boolean.TRUE.equals(acquired)) {
+                generator = new SnowflakeIdGenerator(candidate);
+                nodeId = candidate;
+                leaseValidUntil = validUntil(attemptedAt);
+                System.out.println("🆔 Leased ID node " + candidate);
+                return;
+            }
+        }
+        throw new IllegalStateException("All " + SnowflakeIdGenerator.MAX_NODES + " ID node ids are leased");
+    }
+
+    // Stop a little before Redis would expire the key, to allow for clock skew between us and Redis
+    private long validUntil(long attemptedAt) {
+        return attemptedAt + Duration.ofSeconds(leaseTtlSeconds).toMillis() * 9 / 10;
+    }
+
+    @PreDestroy
+    public void release() {
+        try {
+            stringRedisTemplate.execute(RELEASE_SCRIPT, List.of(KEY_PREFIX + nodeId), owner);
+        } catch (Exception e) {
+            // Expires on its own
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.gateway.ids;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * K-sortable ids without locks.
+ *
+ * <pre>
+ * 0 | 41 bits ms since 2024-01-01 | 10 bits node | 12 bits sequence
+ * </pre>
+ *
+ * Encoded as 13 characters of lowercase Crockford base32, so string order is creation order and new rows land
+ * at the right edge of the primary key index. The timestamp and sequence live in one AtomicLong updated by CAS.
+ * When a millisecond's 4096 ids run out, or the clock steps back, the generator borrows the next millisecond
+ * rather than waiting, so ids stay unique and increasing. Uniqueness across processes comes from the node id,
+ * which must not be used by two live generators at once (see {@link LeasedIdGenerator}).
+ */
+public class SnowflakeIdGenerator implements IdGenerator {
+
+    public static final long EPOCH_MILLIS = 1704067200000L; // 2024-01-01T00:00:00Z
+
+    public static final int NODE_BITS = 10;
+    public static final int MAX_NODES = 1 << NODE_BITS;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private static final int ENCODED_LENGTH = 13;
+    private static final byte[] ALPHABET = "0123456789abcdefghjkmnpqrstvwxyz".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PAYMENT_PREFIX = "pay_".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] REFUND_PREFIX = "rfnd_".getBytes(StandardCharsets.US_ASCII);
+
+    private final long node;
+    // (ms since epoch << SEQUENCE_BITS) | sequence of the last id handed out
+    private final AtomicLong state = new AtomicLong();
+
+    public SnowflakeIdGenerator(int nodeId) {
+        if (nodeId < 0 || nodeId >= MAX_NODES) {
+            throw new IllegalArgumentException("Node id must be in [0, " + MAX_NODES + "): " + nodeId);
+        }
+        this.node = nodeId;
+    }
+
+    public long nextId() {
+        long now = (System.currentTimeMillis() - EPOCH_MILLIS) << SEQUENCE_BITS;
+        while (true) {
+            long last = state.get();
+            // A new millisecond starts at sequence 0; otherwise take the next slot, rolling into the next ms if full
+            long next = now > last ? now : last + 1;
+            if (state.compareAndSet(last, next)) {
+                long timestamp = next >>> SEQUENCE_BITS;
+                return (timestamp << (NODE_BITS + SEQUENCE_BITS)) | (node << SEQUENCE_BITS) | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+
+    @Override
+    public String paymentId() {
+        return encode(PAYMENT_PREFIX, nextId());
+    }
+
+    @Override
+    public String refundId() {
+        return encode(REFUND_PREFIX, nextId());
+    }
+
+    static String encode(byte[] prefix, long id) {
+        byte[] out = new byte[prefix.length + ENCODED_LENGTH];
+        System.arraycopy(prefix, 0, out, 0, prefix.length);
+        // Fixed width, most significant digit first, so lexicographic order matches numeric order
+        for (int i = out.length - 1; i >= prefix.length; i--) {
+            out[i] = ALPHABET[(int) (id & 31)];
+            id >>>= 5;
+        }
+        return new String(out, StandardCharsets.ISO_8859_1);
+    }
+}
@@ -3,6 +3,8 @@ package com.gateway.jobs;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Data
@@ -10,4 +12,6 @@ import java.util.UUID;
 @NoArgsConstructor
 public class DeliverWebhookJob {
     private UUID webhookLogId;
+    // The log's partition key, so the worker reads and updates one partition; null for jobs enqueued without it
+    private LocalDateTime createdAt;
 }
\ No newline at end of file
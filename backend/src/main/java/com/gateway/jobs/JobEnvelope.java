@@ -0,0 +1,23 @@
+package com.gateway.jobs;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * What actually sits in a queue: the job plus when it became runnable and how many times it has been tried.
+ * The partition (merchant id) picks the stream the job goes to; null means the queue's shared stream.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class JobEnvelope {
+    private Object job;
+    private long enqueuedAt; // epoch millis
+    private int attempt;
+    private String partition;
+
+    public JobEnvelope(Object job, long enqueuedAt, int attempt) {
+        this(job, enqueuedAt, attempt, null);
+    }
+}
@@ -4,6 +4,8 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor; // Import this
 import lombok.Data;
 import lombok.NoArgsConstructor; // Import this
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
 import java.io.Serializable;
 import java.time.LocalDateTime;
 import java.util.UUID;
@@ -21,6 +23,7 @@ public class IdempotencyKey {
     @Column(name = "merchant_id")
     private UUID merchantId;
 
+    @JdbcTypeCode(SqlTypes.JSON) // jsonb column
     private String response;
     private LocalDateTime createdAt;
     private LocalDateTime expiresAt;
@@ -1,12 +1,19 @@
 package com.gateway.models;
 
+import com.gateway.auth.MerchantChangeListener;
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import java.util.UUID;
 
 @Data // Auto-generates getters and setters
 @Entity
 @Table(name = "merchants")
+@EntityListeners(MerchantChangeListener.class) // Keeps the API-key cache in sync
+@Cacheable // Second-level cache: webhook delivery looks up the merchant for every attempt
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "merchants")
 public class Merchant {
     @Id
     @GeneratedValue(strategy = GenerationType.AUTO)
@@ -0,0 +1,23 @@
+package com.gateway.models;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+@Data
+@Entity
+@Table(name = "job_outbox")
+public class OutboxEntry {
+    // Ids come 50 at a time from the sequence, so adding entries does not cost a round trip each
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "job_outbox_seq")
+    @SequenceGenerator(name = "job_outbox_seq", sequenceName = "job_outbox_seq", allocationSize = 50)
+    private Long id;
+
+    private String queue; // Stream the job goes to, e.g. jobs:payments
+
+    @Column(nullable = false)
+    private byte[] job; // Encoded by JobQueue.encode
+
+    private LocalDateTime createdAt = LocalDateTime.now();
+}
@@ -1,22 +1,36 @@
 package com.gateway.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import org.hibernate.annotations.DynamicUpdate;
+import org.springframework.data.domain.Persistable;
+
 import java.time.LocalDateTime;
 
 @Data
 @Entity
 @Table(name = "payments")
-public class Payment {
+@DynamicUpdate // Status changes and captures write only the columns they touch
+public class Payment implements Persistable<String> {
     @Id
     private String id; // pay_...
 
-    @ManyToOne
+    // Lazy: loading a payment does not load its merchant, and getMerchant().getId() never initializes the proxy
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "merchant_id")
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private Merchant merchant;
 
     private String orderId;
     private Integer amount;
+
+    // Maintained only by PaymentRepository.addRefundedAmount, so stale entity saves can never overwrite it
+    @Column(insertable = false, updatable = false, columnDefinition = "integer not null default 0")
+    private Integer refundedAmount;
     private String currency;
     private String method;
     private String status; // pending, success, failed
@@ -27,4 +41,21 @@ public class Payment {
 
     private LocalDateTime createdAt = LocalDateTime.now();
     private LocalDateTime updatedAt = LocalDateTime.now();
+
+    // Ids are assigned before saving, so without this Spring Data would SELECT every new payment before inserting it
+    @Transient
+    @JsonIgnore
+    private boolean persisted;
+
+    @Override
+    @JsonIgnore
+    public boolean isNew() {
+        return !persisted;
+    }
+
+    @PostPersist
+    @PostLoad
+    void markPersisted() {
+        persisted = true;
+    }
 }
\ No newline at end of file
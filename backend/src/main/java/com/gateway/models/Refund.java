@@ -1,13 +1,18 @@
 package com.gateway.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.DynamicUpdate;
+import org.springframework.data.domain.Persistable;
+
 import java.time.LocalDateTime;
 
 @Data
 @Entity
 @Table(name = "refunds")
-public class Refund {
+@DynamicUpdate
+public class Refund implements Persistable<String> {
     @Id
     private String id; // rfnd_...
 
@@ -23,4 +28,21 @@ public class Refund {
 
     private LocalDateTime createdAt = LocalDateTime.now();
     private LocalDateTime processedAt;
+
+    // Ids are assigned before saving; see Payment
+    @Transient
+    @JsonIgnore
+    private boolean persisted;
+
+    @Override
+    @JsonIgnore
+    public boolean isNew() {
+        return !persisted;
+    }
+
+    @PostPersist
+    @PostLoad
+    void markPersisted() {
+        persisted = true;
+    }
 }
\ No newline at end of file
@@ -2,9 +2,15 @@ package com.gateway.models;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.UUID;
 
+// Range-partitioned by created_at in Postgres (one partition per day); the primary key there is (id, created_at).
+// The table and its indexes are defined in db/migration.
 @Data
 @Entity
 @Table(name = "webhook_logs")
@@ -17,13 +23,16 @@ public class WebhookLog {
     private UUID merchantId;
 
     private String event;
-    private String payload; // Stores JSON as string
-    private String status; // pending, success, failed
-    private Integer attempts;
+    @JdbcTypeCode(SqlTypes.JSON) // jsonb column, exchanged with the app as a JSON string
+    private String payload;
+    private String status = "pending"; // pending, success, failed
+    private Integer attempts = 0;
     private LocalDateTime lastAttemptAt;
     private LocalDateTime nextRetryAt;
     private Integer responseCode;
     private String responseBody;
-    
-    private LocalDateTime createdAt = LocalDateTime.now();
+
+    // Picks the partition, so it never changes. Microseconds like the column, so the value jobs carry matches it exactly
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
 }
\ No newline at end of file
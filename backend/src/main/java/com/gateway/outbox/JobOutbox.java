@@ -0,0 +1,55 @@
+package com.gateway.outbox;
+
+import com.gateway.models.OutboxEntry;
+import com.gateway.queue.JobQueue;
+import com.gateway.repositories.OutboxEntryRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Enqueues jobs as part of the caller's database transaction.
+ * The job is written to job_outbox next to the state change it belongs to, so either both commit or neither
+ * does; {@link OutboxRelay} moves committed entries to Redis. Jobs are delivered at least once.
+ */
+@Component
+public class JobOutbox {
+
+    @Autowired private OutboxEntryRepository outboxEntryRepository;
+    @Autowired private JobQueue jobQueue;
+    @Autowired private OutboxRelay outboxRelay;
+
+    /**
+     * @param partition merchant the job belongs to (see {@link JobQueue#enqueue})
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void add(String queue, String partition, Object job) {
+        addAll(queue, partition, List.of(job));
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void addAll(String queue, String partition, List<?> jobs) {
+        List<OutboxEntry> entries = new ArrayList<>(jobs.size());
+        for (Object job : jobs) {
+            OutboxEntry entry = new OutboxEntry();
+            entry.setQueue(queue);
+            entry.setJob(jobQueue.encode(partition, job));
+            entries.add(entry);
+        }
+        outboxEntryRepository.saveAll(entries);
+
+        // Relay right after commit instead of waiting for its next poll
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                outboxRelay.wake();
+            }
+        });
+    }
+}
@@ -0,0 +1,140 @@
+package com.gateway.outbox;
+
+import com.gateway.queue.EncodedJob;
+import com.gateway.queue.JobQueue;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves committed outbox entries to the Redis streams.
+ * Each batch is locked with FOR UPDATE SKIP LOCKED, so relays in every API and worker instance can run side by side,
+ * appended with one pipelined round trip and deleted with one statement in the same transaction.
+ * If the process dies after the XADDs but before the commit, the batch is relayed again (at-least-once).
+ */
+@Component
+public class OutboxRelay {
+
+    private static final String SELECT_SQL = "SELECT id, queue, job FROM job_outbox ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED";
+    private static final String DELETE_SQL = "DELETE FROM job_outbox WHERE id = ANY(?)";
+    private static final String OLDEST_SQL = "SELECT created_at FROM job_outbox ORDER BY id LIMIT 1";
+
+    private record Row(long id, EncodedJob job) {}
+
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private TransactionTemplate transactionTemplate;
+    @Autowired private JobQueue jobQueue;
+    @Autowired private MeterRegistry meterRegistry;
+
+    @Value("${outbox.relay.batch-size:500}")
+    private int batchSize;
+
+    @Value("${outbox.relay.poll-interval-ms:200}")
+    private long pollIntervalMs;
+
+    private final Semaphore wakeups = new Semaphore(0);
+    private final Thread relay = new Thread(this::run, "outbox-relay");
+    private volatile boolean active = true;
+    private Counter relayed;
+
+    @PostConstruct
+    public void start() {
+        relayed = Counter.builder("gateway.outbox.relayed")
+                .description("Outbox entries appended to Redis")
+                .register(meterRegistry);
+        Gauge.builder("gateway.outbox.lag", this, OutboxRelay::lagSeconds)
+                .description("Age of the oldest outbox entry not yet relayed")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+
+        relay.setDaemon(true);
+        relay.start();
+    }
+
+    public void wake() {
+        if (wakeups.availablePermits() == 0) wakeups.release();
+    }
+
+    private void run() {
+        while (active) {
+            try {
+                // A full batch means there is probably more; otherwise wait for a commit or the next poll
+                if (relayBatch() < batchSize) {
+                    wakeups.tryAcquire(pollIntervalMs, TimeUnit.MILLISECONDS);
+                    wakeups.drainPermits();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                if (!active) return;
+                System.err.println("Outbox relay failed, retrying: " + e.getMessage());
+                pause();
+            }
+        }
+    }
+
+    private int relayBatch() {
+        Integer count = transactionTemplate.execute(status -> {
+            List<Row> rows = jdbcTemplate.query(SELECT_SQL,
+                    (rs, i) -> new Row(rs.getLong(1), new EncodedJob(rs.getString(2), rs.getBytes(3))), batchSize);
+            if (rows.isEmpty()) return 0;
+
+            List<EncodedJob> jobs = new ArrayList<>(rows.size());
+            Long[] ids = new Long[rows.size()];
+            for (int i = 0; i < rows.size(); i++) {
+                jobs.add(rows.get(i).job());
+                ids[i] = rows.get(i).id();
+            }
+            jobQueue.enqueueEncoded(jobs);
+            jdbcTemplate.update(connection -> {
+                PreparedStatement ps = connection.prepareStatement(DELETE_SQL);
+                Array array = connection.createArrayOf("bigint", ids);
+                ps.setArray(1, array);
+                return ps;
+            });
+            return rows.size();
+        });
+        int relayedNow = count != null ? count : 0;
+        relayed.increment(relayedNow);
+        return relayedNow;
+    }
+
+    private double lagSeconds() {
+        List<Timestamp> oldest = jdbcTemplate.queryForList(OLDEST_SQL, Timestamp.class);
+        if (oldest.isEmpty() || oldest.get(0) == null) return 0;
+        return Math.max(0, Duration.between(oldest.get(0).toLocalDateTime(), LocalDateTime.now()).toMillis() / 1000.0);
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        active = false;
+        wake(); // Lets the current batch finish rather than interrupting it mid-transaction
+        relay.join(TimeUnit.SECONDS.toMillis(10));
+    }
+}
@@ -0,0 +1,20 @@
+package com.gateway.processing;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class PaymentOutcome {
+    private boolean success;
+    private String errorCode;
+    private String errorDescription;
+
+    public static PaymentOutcome approved() {
+        return new PaymentOutcome(true, null, null);
+    }
+
+    public static PaymentOutcome declined(String errorCode, String errorDescription) {
+        return new PaymentOutcome(false, errorCode, errorDescription);
+    }
+}
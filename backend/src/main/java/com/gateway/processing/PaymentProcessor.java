@@ -0,0 +1,17 @@
+package com.gateway.processing;
+
+import com.gateway.models.Payment;
+import com.gateway.models.Refund;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Talks to the acquirer/bank on behalf of the workers.
+ * Implementations must not block the calling thread: the returned future completes when the bank answers.
+ */
+public interface PaymentProcessor {
+
+    CompletableFuture<PaymentOutcome> authorize(Payment payment);
+
+    CompletableFuture<Void> refund(Refund refund);
+}
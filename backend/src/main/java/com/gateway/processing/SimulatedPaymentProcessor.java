@@ -0,0 +1,91 @@
+package com.gateway.processing;
+
+import com.gateway.models.Payment;
+import com.gateway.models.Refund;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Default processor: fakes the bank round trip.
+ * Outcomes are completed from a hashed-wheel timer, so a pending payment costs one timer slot instead of a sleeping thread.
+ */
+@Component
+public class SimulatedPaymentProcessor implements PaymentProcessor {
+
+    @Value("${processor.simulator.payment-delay-min-ms:5000}")
+    private long paymentDelayMinMs;
+
+    @Value("${processor.simulator.payment-delay-max-ms:10000}")
+    private long paymentDelayMaxMs;
+
+    @Value("${processor.simulator.refund-delay-ms:3000}")
+    private long refundDelayMs;
+
+    // 10ms ticks are plenty for second-scale bank latencies; the timer thread starts on first use
+    private final Timer timer = new HashedWheelTimer(r -> {
+        Thread t = new Thread(r, "bank-simulator-timer");
+        t.setDaemon(true);
+        return t;
+    }, 10, TimeUnit.MILLISECONDS, 1024);
+
+    // Keeps the future with its timeout, so shutdown can fail the ones that never fired
+    private record Completion<T>(CompletableFuture<T> result, Consumer<CompletableFuture<T>> complete) implements TimerTask {
+        @Override
+        public void run(Timeout timeout) {
+            complete.accept(result);
+        }
+    }
+
+    @Override
+    public CompletableFuture<PaymentOutcome> authorize(Payment payment) {
+        long delay = ThreadLocalRandom.current().nextLong(paymentDelayMinMs, paymentDelayMaxMs + 1);
+        return schedule(result -> result.complete(determineOutcome(payment.getMethod())), delay);
+    }
+
+    @Override
+    public CompletableFuture<Void> refund(Refund refund) {
+        return schedule(result -> result.complete(null), refundDelayMs);
+    }
+
+    private <T> CompletableFuture<T> schedule(Consumer<CompletableFuture<T>> complete, long delayMs) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            timer.newTimeout(new Completion<>(result, complete), delayMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) { // Timer already stopped
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    private PaymentOutcome determineOutcome(String method) {
+        double chance = ThreadLocalRandom.current().nextDouble(); // 0.0 to 1.0
+        boolean isSuccess = "upi".equalsIgnoreCase(method)
+                ? chance < 0.90  // 90% success for UPI
+                : chance < 0.95; // 95% success for Cards
+
+        return isSuccess
+                ? PaymentOutcome.approved()
+                : PaymentOutcome.declined("BANK_FAILURE", "The bank rejected the transaction.");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Unfinished simulated payments stay 'pending' in the DB. Their futures fail, so the workers release what
+        // they hold for them and leave the jobs unacked, to be reclaimed
+        IllegalStateException stopped = new IllegalStateException("Bank simulator stopped");
+        for (Timeout timeout : timer.stop()) {
+            if (timeout.task() instanceof Completion<?> completion) completion.result().completeExceptionally(stopped);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.gateway.queue;
+
+import com.gateway.jobs.JobEnvelope;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Jobs that should run later, kept in a sorted set per queue scored by due time (epoch millis).
+ * Scheduling is a single ZADD. The member is the job, its attempt and its partition only, with no time in it, so
+ * scheduling a job that is already waiting just moves it to the new due time instead of adding a second copy;
+ * the due time becomes the job's enqueue time when it is promoted. A job that was already promoted is no longer
+ * in the set, so scheduling it again does add a copy: consumers still see a job more than once.
+ *
+ * {@link #promoteDue} moves due entries onto their partition's stream. Those streams live on other cluster
+ * slots than the sorted set, so the move cannot be one script: due entries are first claimed by pushing their
+ * score past a lease, then appended, then removed. A promoter that dies in between leaves them to be claimed
+ * again once the lease runs out, so a job may be promoted twice but never lost.
+ */
+@Component
+public class DelayQueue {
+
+    // Claims up to ARGV[2] entries due by ARGV[1] by rescoring them to ARGV[3], and returns them each followed
+    // by the score it had (its due time)
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static final RedisScript<List<byte[]>> CLAIM_SCRIPT = new DefaultRedisScript<>("""
+            local due = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1], 'WITHSCORES', 'LIMIT', 0, tonumber(ARGV[2]))
+            for i = 1, #due, 2 do
+                redis.call('ZADD', KEYS[1], ARGV[3], due[i])
+            end
+            return due
+            """, (Class<List<byte[]>>) (Class) List.class);
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private JobQueue jobQueue;
+
+    @Value("${delay-queue.claim-lease-ms:30000}")
+    private long claimLeaseMs;
+
+    public void schedule(String queue, String partition, Object job, int attempt, Instant dueAt) {
+        // No enqueue time in the member: it would make every reschedule a new entry (see promoteDue)
+        long due = dueAt.toEpochMilli();
+        redisTemplate.opsForZSet().add(delayedKey(queue), new JobEnvelope(job, 0, attempt, partition), due);
+    }
+
+    /**
+     * @return how many jobs were moved; equal to {@code batchSize} when more may be due
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public long promoteDue(String queue, int batchSize) {
+        long now = System.currentTimeMillis();
+        byte[] key = delayedKey(queue).getBytes(StandardCharsets.UTF_8);
+        // The result serializer applies to each element of the returned list
+        List<byte[]> due = redisTemplate.execute(CLAIM_SCRIPT, StringRedisSerializer.UTF_8, (RedisSerializer) RedisSerializer.byteArray(),
+                List.of(delayedKey(queue)),
+                String.valueOf(now), String.valueOf(batchSize), String.valueOf(now + claimLeaseMs));
+        if (due == null || due.isEmpty()) return 0;
+
+        // Entries are stored as encoded jobs, partition included; only the enqueue time is filled in
+        List<EncodedJob> jobs = new ArrayList<>(due.size() / 2);
+        byte[][] members = new byte[due.size() / 2][];
+        for (int i = 0; i < due.size(); i += 2) {
+            long dueAt = (long) Double.parseDouble(new String(due.get(i + 1), StandardCharsets.US_ASCII));
+            members[i / 2] = due.get(i);
+            jobs.add(new EncodedJob(queue, JobCodec.withEnqueuedAt(due.get(i), dueAt)));
+        }
+        jobQueue.enqueueEncoded(jobs);
+
+        redisTemplate.execute((RedisCallback<Long>) connection ->
+                connection.zSetCommands().zRem(key, members));
+        return members.length;
+    }
+
+    public long size(String queue) {
+        Long size = redisTemplate.opsForZSet().zCard(delayedKey(queue));
+        return size != null ? size : 0;
+    }
+
+    private static String delayedKey(String queue) {
+        return queue + ":delayed";
+    }
+}
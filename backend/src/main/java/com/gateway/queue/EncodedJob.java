@@ -0,0 +1,7 @@
+package com.gateway.queue;
+
+/**
+ * A job already encoded the way {@link JobQueue#enqueue} would store it, waiting to be appended to {@code queue}.
+ * The encoding carries the partition, so the job lands on the same stream it would have been enqueued to.
+ */
+public record EncodedJob(String queue, byte[] job) {}
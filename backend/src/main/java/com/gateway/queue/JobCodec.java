@@ -0,0 +1,195 @@
+package com.gateway.queue;
+
+import com.gateway.jobs.DeliverWebhookJob;
+import com.gateway.jobs.JobEnvelope;
+import com.gateway.jobs.ProcessPaymentJob;
+import com.gateway.jobs.ProcessRefundJob;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.UUID;
+
+/**
+ * Compact binary encoding for queued jobs.
+ *
+ * <pre>
+ * magic(1) version(1) type(1) enqueuedAt(8) attempt(4) partition id
+ *   partition = length(1) + UTF-8 bytes, length 0 for none (version 2 only)
+ *   id = length(1) + UTF-8 bytes   for payment and refund ids
+ *   id = 16 bytes [createdAt(8)]   for webhook log UUIDs, then the log's created_at in epoch micros (UTC wall
+ *                                  clock) if known; readers that predate it stop after the UUID
+ * </pre>
+ *
+ * A payment job is about 30 bytes plus its partition, instead of ~90 bytes of JSON with a class name. Anything that is not a
+ * known job envelope, and any value that does not start with the magic byte (such as JSON jobs enqueued
+ * before this format existed), goes through Jackson as before.
+ */
+public class JobCodec implements RedisSerializer<Object> {
+
+    // JSON never starts with this byte
+    static final byte MAGIC = (byte) 0xB7;
+    static final byte VERSION = 2;
+    static final byte VERSION_WITHOUT_PARTITION = 1;
+
+    static final byte TYPE_PAYMENT = 1;
+    static final byte TYPE_REFUND = 2;
+    static final byte TYPE_WEBHOOK = 3;
+
+    private static final int HEADER_LENGTH = 3 + 8 + 4;
+
+    private final GenericJackson2JsonRedisSerializer json = new GenericJackson2JsonRedisSerializer();
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value instanceof JobEnvelope envelope) {
+            Object job = envelope.getJob();
+            if (job instanceof ProcessPaymentJob payment) {
+                return encodeStringId(TYPE_PAYMENT, envelope, payment.getPaymentId());
+            }
+            if (job instanceof ProcessRefundJob refund) {
+                return encodeStringId(TYPE_REFUND, envelope, refund.getRefundId());
+            }
+            if (job instanceof DeliverWebhookJob webhook) {
+                byte[] partition = partitionBytes(envelope);
+                byte[] bytes = new byte[HEADER_LENGTH + 1 + partition.length + 16 + (webhook.getCreatedAt() != null ? 8 : 0)];
+                int pos = writeHeader(bytes, TYPE_WEBHOOK, envelope, partition);
+                pos = writeLong(bytes, pos, webhook.getWebhookLogId().getMostSignificantBits());
+                pos = writeLong(bytes, pos, webhook.getWebhookLogId().getLeastSignificantBits());
+                if (webhook.getCreatedAt() != null) writeLong(bytes, pos, toEpochMicros(webhook.getCreatedAt()));
+                return bytes;
+            }
+        }
+        return json.serialize(value);
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) return null;
+        if (bytes[0] != MAGIC) return json.deserialize(bytes);
+
+        if (bytes.length < HEADER_LENGTH + 1) {
+            throw new SerializationException("Truncated job envelope (" + bytes.length + " bytes)");
+        }
+        if (bytes[1] != VERSION && bytes[1] != VERSION_WITHOUT_PARTITION) {
+            throw new SerializationException("Unsupported job envelope version " + bytes[1]);
+        }
+        byte type = bytes[2];
+        long enqueuedAt = readLong(bytes, 3);
+        int attempt = readInt(bytes, 11);
+        int pos = HEADER_LENGTH;
+
+        String partition = null;
+        if (bytes[1] == VERSION) {
+            partition = readPartition(bytes);
+            pos += 1 + (bytes[pos] & 0xFF);
+        }
+
+        Object job = switch (type) {
+            case TYPE_PAYMENT -> new ProcessPaymentJob(readStringId(bytes, pos));
+            case TYPE_REFUND -> new ProcessRefundJob(readStringId(bytes, pos));
+            case TYPE_WEBHOOK -> new DeliverWebhookJob(new UUID(readLong(bytes, pos), readLong(bytes, pos + 8)),
+                    bytes.length >= pos + 24 ? fromEpochMicros(readLong(bytes, pos + 16)) : null);
+            default -> throw new SerializationException("Unknown job type " + type);
+        };
+        return new JobEnvelope(job, enqueuedAt, attempt, partition);
+    }
+
+    /**
+     * The partition of an encoded job without decoding the rest; null for the shared stream and for
+     * anything that is not a binary envelope.
+     */
+    public static String partition(byte[] bytes) {
+        if (bytes == null || bytes.length <= HEADER_LENGTH || bytes[0] != MAGIC || bytes[1] != VERSION) return null;
+        return readPartition(bytes);
+    }
+
+    /**
+     * A copy of an encoded job with its enqueue time replaced, without decoding the rest; anything that is not a
+     * binary envelope comes back unchanged.
+     */
+    public static byte[] withEnqueuedAt(byte[] bytes, long enqueuedAt) {
+        if (bytes == null || bytes.length < HEADER_LENGTH || bytes[0] != MAGIC) return bytes;
+        byte[] copy = bytes.clone();
+        writeLong(copy, 3, enqueuedAt);
+        return copy;
+    }
+
+    private static String readPartition(byte[] bytes) {
+        int length = bytes[HEADER_LENGTH] & 0xFF;
+        return length == 0 ? null : new String(bytes, HEADER_LENGTH + 1, length, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] partitionBytes(JobEnvelope envelope) {
+        if (envelope.getPartition() == null) return new byte[0];
+        byte[] partition = envelope.getPartition().getBytes(StandardCharsets.UTF_8);
+        if (partition.length > 255) throw new SerializationException("Partition too long: " + envelope.getPartition());
+        return partition;
+    }
+
+    private static byte[] encodeStringId(byte type, JobEnvelope envelope, String id) {
+        byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+        if (idBytes.length > 255) throw new SerializationException("Job id too long: " + id);
+
+        byte[] partition = partitionBytes(envelope);
+        byte[] bytes = new byte[HEADER_LENGTH + 1 + partition.length + 1 + idBytes.length];
+        int pos = writeHeader(bytes, type, envelope, partition);
+        bytes[pos++] = (byte) idBytes.length;
+        System.arraycopy(idBytes, 0, bytes, pos, idBytes.length);
+        return bytes;
+    }
+
+    private static String readStringId(byte[] bytes, int pos) {
+        int length = bytes[pos] & 0xFF;
+        return new String(bytes, pos + 1, length, StandardCharsets.UTF_8);
+    }
+
+    private static int writeHeader(byte[] bytes, byte type, JobEnvelope envelope, byte[] partition) {
+        bytes[0] = MAGIC;
+        bytes[1] = VERSION;
+        bytes[2] = type;
+        writeLong(bytes, 3, envelope.getEnqueuedAt());
+        writeInt(bytes, 11, envelope.getAttempt());
+        bytes[HEADER_LENGTH] = (byte) partition.length;
+        System.arraycopy(partition, 0, bytes, HEADER_LENGTH + 1, partition.length);
+        return HEADER_LENGTH + 1 + partition.length;
+    }
+
+    private static int writeLong(byte[] bytes, int pos, long value) {
+        for (int i = 7; i >= 0; i--) {
+            bytes[pos + i] = (byte) value;
+            value >>>= 8;
+        }
+        return pos + 8;
+    }
+
+    private static void writeInt(byte[] bytes, int pos, int value) {
+        bytes[pos] = (byte) (value >>> 24);
+        bytes[pos + 1] = (byte) (value >>> 16);
+        bytes[pos + 2] = (byte) (value >>> 8);
+        bytes[pos + 3] = (byte) value;
+    }
+
+    private static long readLong(byte[] bytes, int pos) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[pos + i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static long toEpochMicros(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + time.getNano() / 1_000;
+    }
+
+    private static LocalDateTime fromEpochMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000), Math.floorMod(micros, 1_000_000) * 1_000, ZoneOffset.UTC);
+    }
+
+    private static int readInt(byte[] bytes, int pos) {
+        return ((bytes[pos] & 0xFF) << 24) | ((bytes[pos + 1] & 0xFF) << 16) | ((bytes[pos + 2] & 0xFF) << 8) | (bytes[pos + 3] & 0xFF);
+    }
+}
@@ -0,0 +1,66 @@
+package com.gateway.queue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reliable job transport shared by the API and the workers.
+ * A polled job is owned by its consumer until it is acked; jobs of consumers that die are reclaimed by others.
+ *
+ * Every queue ({@link Queues}) is partitioned by merchant: jobs are added with a partition and land on that
+ * partition's stream ({@link Queues#stream}); consumers poll, ack and reclaim per stream and decide themselves
+ * which partition to read next.
+ */
+public interface JobQueue {
+
+    /**
+     * @param partition merchant id, or null for the queue's shared stream
+     */
+    void enqueue(String queue, String partition, Object job);
+
+    /**
+     * Encodes a job as {@link #enqueue} would, for callers that store it elsewhere first (the outbox).
+     * The partition travels inside the encoded job.
+     */
+    byte[] encode(String partition, Object job);
+
+    /**
+     * Appends already-encoded jobs, possibly to several queues and partitions, in one round trip.
+     */
+    void enqueueEncoded(List<EncodedJob> jobs);
+
+    /**
+     * The queue's partitions that may hold jobs, with when a job was last added to each (epoch millis).
+     * The shared stream is not included.
+     */
+    Map<String, Long> partitions(String queue);
+
+    /**
+     * Deletes a partition's stream if it is empty and drops the partition from {@link #partitions}, unless a job
+     * was added after {@code lastEnqueuedAt}.
+     *
+     * @return whether the partition was retired
+     */
+    boolean retire(String queue, String partition, long lastEnqueuedAt);
+
+    /**
+     * Reads up to {@code count} new jobs for this consumer from one stream, blocking for at most {@code block}
+     * when it is empty; a null {@code block} returns right away. Entries that cannot be decoded are set aside
+     * rather than returned, so every job returned is non-null.
+     */
+    List<QueuedJob> poll(String stream, String consumer, int count, Duration block);
+
+    void ack(String stream, String jobId);
+
+    /**
+     * Takes over jobs that other consumers have held on this stream without acking for longer than {@code minIdle}.
+     * Successive calls walk the pending list in slices of {@code count}, starting over once they reach its end.
+     */
+    List<QueuedJob> reclaim(String stream, String consumer, Duration minIdle, int count);
+
+    /**
+     * Totals over the shared stream and every partition of the queue.
+     */
+    QueueStats stats(String queue);
+}
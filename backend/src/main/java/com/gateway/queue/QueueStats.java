@@ -0,0 +1,16 @@
+package com.gateway.queue;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.Map;
+
+@Data
+@AllArgsConstructor
+public class QueueStats {
+    private long length;     // jobs not yet acked
+    private long pending;    // delivered to a consumer but not acked yet
+    private long lag;        // not delivered to any consumer yet
+    private int partitions;  // merchant streams that may hold jobs, besides the shared one
+    private Map<String, Long> pendingByConsumer;
+}
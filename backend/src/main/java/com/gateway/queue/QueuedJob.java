@@ -0,0 +1,16 @@
+package com.gateway.queue;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * A job handed out by a {@link JobQueue}; it stays pending until acked with its id.
+ */
+@Data
+@AllArgsConstructor
+public class QueuedJob {
+    private String id;
+    private Object job;
+    private long enqueuedAt; // epoch millis, 0 for jobs enqueued before envelopes existed
+    private int attempt;
+}
@@ -0,0 +1,44 @@
+package com.gateway.queue;
+
+/**
+ * Redis keys of the job streams.
+ *
+ * Each queue is split into one stream per merchant ({@link #stream}) so one busy merchant cannot hold up the
+ * others, plus the queue's own key for jobs without a merchant (and for entries written before partitioning).
+ * The merchant part of the key is a Redis Cluster hash tag: a merchant's payment, refund and webhook streams
+ * live on one shard and different merchants spread across shards.
+ */
+public final class Queues {
+    public static final String PAYMENTS = "jobs:payments";
+    public static final String REFUNDS = "jobs:refunds";
+    public static final String WEBHOOKS = "jobs:webhooks";
+
+    public static final String[] ALL = {PAYMENTS, REFUNDS, WEBHOOKS};
+
+    private Queues() {}
+
+    /**
+     * The stream holding {@code queue}'s jobs for one partition (merchant id), e.g. {@code jobs:{m:<id>}:payments}.
+     * A null partition is the shared stream, which is the queue key itself.
+     */
+    public static String stream(String queue, String partition) {
+        if (partition == null) return queue;
+        int colon = queue.indexOf(':');
+        return queue.substring(0, colon + 1) + "{m:" + partition + "}" + queue.substring(colon);
+    }
+
+    /**
+     * Sorted set of the queue's partitions that may hold jobs, scored by when a job was last added (epoch millis).
+     */
+    public static String partitionsKey(String queue) {
+        return queue + ":partitions";
+    }
+
+    /**
+     * Stream of the entries of {@code stream} that could not be decoded, kept (capped) for inspection.
+     * Shares the stream's hash tag, so on a cluster both live on one shard.
+     */
+    public static String deadLetter(String stream) {
+        return stream + ":dead";
+    }
+}
@@ -0,0 +1,392 @@
+package com.gateway.queue;
+
+import com.gateway.jobs.JobEnvelope;
+import io.lettuce.core.StreamMessage;
+import io.lettuce.core.XAutoClaimArgs;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+import io.lettuce.core.models.stream.ClaimedMessages;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisStreamCommands.XAddOptions;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.stream.ByteRecord;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * {@link JobQueue} on Redis Streams: XADD to enqueue, XREADGROUP to poll, XACK + XDEL once done.
+ * All workers share one consumer group per stream, so each job goes to exactly one consumer and stays in its
+ * pending list until acked. Acked entries are deleted, so XLEN is the number of unfinished jobs.
+ *
+ * Each merchant gets its own stream per queue, registered in the queue's partitions sorted set when a job is added.
+ * Every command touches a single key, so this works the same on Redis Cluster.
+ *
+ * Entries that cannot be decoded are moved to the stream's dead-letter stream ({@link Queues#deadLetter}) and
+ * acked, so they neither hold up the rest of their batch nor come back on every reclaim.
+ */
+@Component
+public class RedisStreamJobQueue implements JobQueue {
+
+    static final String GROUP = "workers";
+    static final String FIELD = "job";
+    static final long DEAD_LETTER_MAXLEN = 10_000;
+
+    // Bumps the partition's score to now, or just past its current score, so every enqueue raises it
+    private static final byte[] REGISTER_SCRIPT = """
+            local score = tonumber(ARGV[2])
+            local current = redis.call('ZSCORE', KEYS[1], ARGV[1])
+            if current and tonumber(current) >= score then score = tonumber(current) + 1 end
+            return redis.call('ZADD', KEYS[1], score, ARGV[1])
+            """.getBytes(StandardCharsets.UTF_8);
+
+    // Deletes the stream only if nothing is left in it, so a job added concurrently is never lost
+    private static final RedisScript<Long> DELETE_IF_EMPTY_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('XLEN', KEYS[1]) == 0 then
+                return redis.call('DEL', KEYS[1])
+            end
+            return 0
+            """, Long.class);
+
+    // Drops a partition only if no job was added since ARGV[2] (a newer enqueue bumps the score)
+    private static final RedisScript<Long> UNREGISTER_SCRIPT = new DefaultRedisScript<>("""
+            local score = redis.call('ZSCORE', KEYS[1], ARGV[1])
+            if score and tonumber(score) == tonumber(ARGV[2]) then
+                return redis.call('ZREM', KEYS[1], ARGV[1])
+            end
+            return 0
+            """, Long.class);
+
+    // {length, pending, consumer, count, consumer, count, ...}; streams without a group yet count as not pending
+    private static final byte[] STATS_SCRIPT = """
+            if redis.call('EXISTS', KEYS[1]) == 0 then return {0, 0} end
+            local result = {redis.call('XLEN', KEYS[1]), 0}
+            local ok, summary = pcall(redis.call, 'XPENDING', KEYS[1], ARGV[1])
+            if ok then
+                result[2] = summary[1]
+                if summary[4] then
+                    for _, consumer in ipairs(summary[4]) do
+                        table.insert(result, consumer[1])
+                        table.insert(result, tonumber(consumer[2]))
+                    end
+                end
+            end
+            return result
+            """.getBytes(StandardCharsets.UTF_8);
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    private final Set<String> groupsCreated = ConcurrentHashMap.newKeySet();
+    private final Map<String, String> reclaimCursors = new ConcurrentHashMap<>();
+
+    @Override
+    public void enqueue(String queue, String partition, Object job) {
+        enqueueEncoded(List.of(new EncodedJob(queue, encode(partition, job))));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public byte[] encode(String partition, Object job) {
+        RedisSerializer<Object> serializer = (RedisSerializer<Object>) redisTemplate.getHashValueSerializer();
+        return serializer.serialize(new JobEnvelope(job, System.currentTimeMillis(), 0, partition));
+    }
+
+    @Override
+    public void enqueueEncoded(List<EncodedJob> jobs) {
+        if (jobs.isEmpty()) return;
+        byte[] field = rawKey(FIELD);
+
+        // Register each partition once per call; the score says when it last got a job
+        Map<String, Set<String>> partitions = new HashMap<>();
+        for (EncodedJob job : jobs) {
+            String partition = JobCodec.partition(job.job());
+            if (partition != null) partitions.computeIfAbsent(job.queue(), q -> new HashSet<>()).add(partition);
+        }
+        byte[] now = rawKey(String.valueOf(System.currentTimeMillis()));
+
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (EncodedJob job : jobs) {
+                String stream = Queues.stream(job.queue(), JobCodec.partition(job.job()));
+                connection.streamCommands().xAdd(MapRecord.create(rawKey(stream), Map.of(field, job.job())));
+            }
+            return null;
+        });
+        if (partitions.isEmpty()) return;
+
+        // Only once the jobs are in (on a cluster the streams may sit on other nodes than the registry), so a
+        // worker that sees the newer score always finds the jobs; see WorkerPool
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            partitions.forEach((queue, members) -> {
+                byte[] key = rawKey(Queues.partitionsKey(queue));
+                for (String partition : members) {
+                    connection.scriptingCommands().eval(REGISTER_SCRIPT, ReturnType.INTEGER, 1, key, rawKey(partition), now);
+                }
+            });
+            return null;
+        });
+    }
+
+    @Override
+    public Map<String, Long> partitions(String queue) {
+        Set<ZSetOperations.TypedTuple<String>> members = stringRedisTemplate.opsForZSet().rangeWithScores(Queues.partitionsKey(queue), 0, -1);
+        if (members == null) return Map.of();
+
+        Map<String, Long> partitions = new LinkedHashMap<>(members.size());
+        for (ZSetOperations.TypedTuple<String> member : members) {
+            partitions.put(member.getValue(), member.getScore() != null ? member.getScore().longValue() : 0L);
+        }
+        return partitions;
+    }
+
+    @Override
+    public boolean retire(String queue, String partition, long lastEnqueuedAt) {
+        String stream = Queues.stream(queue, partition);
+        Long deleted = stringRedisTemplate.execute(DELETE_IF_EMPTY_SCRIPT, List.of(stream));
+        if (deleted == null || deleted == 0) {
+            // Still has jobs, or was already deleted; only unregister in the latter case
+            Boolean exists = stringRedisTemplate.hasKey(stream);
+            if (exists == null || exists) return false;
+        }
+        groupsCreated.remove(stream);
+        reclaimCursors.remove(stream);
+        Long removed = stringRedisTemplate.execute(UNREGISTER_SCRIPT, List.of(Queues.partitionsKey(queue)),
+                partition, String.valueOf(lastEnqueuedAt));
+        return removed != null && removed > 0;
+    }
+
+    @Override
+    public List<QueuedJob> poll(String stream, String consumer, int count, Duration block) {
+        if (!ensureGroup(stream)) return List.of();
+        byte[] key = rawKey(stream);
+        StreamReadOptions options = StreamReadOptions.empty().count(count);
+        StreamReadOptions readOptions = block != null ? options.block(block) : options;
+        try {
+            // Raw bytes, so one entry that does not decode cannot fail the whole batch; see decode
+            List<ByteRecord> records = redisTemplate.execute((RedisCallback<List<ByteRecord>>) connection -> {
+                @SuppressWarnings("unchecked") // generic varargs array of a single offset, never stored
+                List<ByteRecord> read = connection.streamCommands().xReadGroup(
+                        Consumer.from(GROUP, consumer), readOptions, StreamOffset.create(key, ReadOffset.lastConsumed()));
+                return read;
+            });
+            if (records == null || records.isEmpty()) return List.of();
+
+            List<QueuedJob> jobs = new ArrayList<>(records.size());
+            for (ByteRecord record : records) {
+                QueuedJob job = decode(stream, record.getId().getValue(), fieldValue(record.getValue()));
+                if (job != null) jobs.add(job);
+            }
+            return jobs;
+        } catch (DataAccessException e) {
+            // The stream was deleted (retired, or FLUSHALL) and maybe created again by XADD; retry on the next call
+            if (forgetGroupIfMissing(stream, e)) return List.of();
+            throw e;
+        }
+    }
+
+    @Override
+    public void ack(String stream, String jobId) {
+        byte[] key = rawKey(stream);
+        RecordId id = RecordId.of(jobId);
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.streamCommands().xAck(key, GROUP, id);
+            connection.streamCommands().xDel(key, id);
+            return null;
+        });
+    }
+
+    @Override
+    public List<QueuedJob> reclaim(String stream, String consumer, Duration minIdle, int count) {
+        if (!ensureGroup(stream)) return List.of();
+        byte[] key = rawKey(stream);
+        // Carry on from where the last call stopped, so each call looks at the next slice of the pending list
+        String start = reclaimCursors.getOrDefault(stream, "0-0");
+
+        // Spring Data Redis has no XAUTOCLAIM yet, so go through the native Lettuce connection
+        ClaimedMessages<byte[], byte[]> claimed = redisTemplate.execute((RedisCallback<ClaimedMessages<byte[], byte[]>>) connection -> {
+            @SuppressWarnings("unchecked")
+            RedisClusterAsyncCommands<byte[], byte[]> commands = (RedisClusterAsyncCommands<byte[], byte[]>) connection.getNativeConnection();
+            XAutoClaimArgs<byte[]> args = XAutoClaimArgs.Builder
+                    .<byte[]>xautoclaim(io.lettuce.core.Consumer.from(rawKey(GROUP), rawKey(consumer)), minIdle, start)
+                    .count(count);
+            try {
+                return commands.xautoclaim(key, args).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (ExecutionException e) {
+                if (String.valueOf(e.getCause().getMessage()).contains("NOGROUP")) {
+                    groupsCreated.remove(stream);
+                    reclaimCursors.remove(stream);
+                    return null;
+                }
+                throw new IllegalStateException("XAUTOCLAIM failed on " + stream, e.getCause());
+            }
+        });
+        if (claimed == null) return List.of();
+        // 0-0 means the scan reached the end of the pending list; the next call starts over
+        if (claimed.getId() == null || "0-0".equals(claimed.getId())) {
+            reclaimCursors.remove(stream);
+        } else {
+            reclaimCursors.put(stream, claimed.getId());
+        }
+        if (claimed.getMessages().isEmpty()) return List.of();
+
+        List<QueuedJob> jobs = new ArrayList<>(claimed.getMessages().size());
+        for (StreamMessage<byte[], byte[]> message : claimed.getMessages()) {
+            QueuedJob job = decode(stream, message.getId(), fieldValue(message.getBody()));
+            if (job != null) jobs.add(job);
+        }
+        return jobs;
+    }
+
+    @Override
+    public QueueStats stats(String queue) {
+        Set<String> partitions = partitions(queue).keySet();
+        List<String> streams = new ArrayList<>(partitions.size() + 1);
+        streams.add(queue);
+        for (String partition : partitions) streams.add(Queues.stream(queue, partition));
+
+        byte[] group = rawKey(GROUP);
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String stream : streams) {
+                connection.scriptingCommands().eval(STATS_SCRIPT, ReturnType.MULTI, 1, rawKey(stream), group);
+            }
+            return null;
+        }, StringRedisSerializer.UTF_8);
+
+        long total = 0;
+        long pending = 0;
+        Map<String, Long> byConsumer = new HashMap<>();
+        for (Object result : results) {
+            if (!(result instanceof List<?> values) || values.size() < 2) continue;
+            total += ((Number) values.get(0)).longValue();
+            pending += ((Number) values.get(1)).longValue();
+            for (int i = 2; i + 1 < values.size(); i += 2) {
+                byConsumer.merge(asString(values.get(i)), ((Number) values.get(i + 1)).longValue(), Long::sum);
+            }
+        }
+        return new QueueStats(total, pending, Math.max(0, total - pending), partitions.size(), byConsumer);
+    }
+
+    /**
+     * @return the entry's job, or null if there is nothing to run: the entry was deleted while pending (acked), or
+     * it cannot be decoded, in which case retrying will not help and it is moved to the dead-letter stream
+     */
+    private QueuedJob decode(String stream, String id, byte[] value) {
+        if (value == null) {
+            ack(stream, id);
+            return null;
+        }
+        Object job;
+        try {
+            job = redisTemplate.getHashValueSerializer().deserialize(value);
+        } catch (RuntimeException e) {
+            deadLetter(stream, id, value, String.valueOf(e.getMessage()));
+            return null;
+        }
+        if (job == null) {
+            deadLetter(stream, id, value, "empty job");
+            return null;
+        }
+        return toQueuedJob(id, job);
+    }
+
+    private void deadLetter(String stream, String id, byte[] value, String reason) {
+        System.err.println("Dead-lettering unreadable job " + id + " on " + stream + ": " + reason);
+        byte[] key = rawKey(stream);
+        RecordId recordId = RecordId.of(id);
+        Map<byte[], byte[]> entry = Map.of(rawKey(FIELD), value, rawKey("source"), key,
+                rawKey("id"), rawKey(id), rawKey("reason"), rawKey(reason));
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.streamCommands().xAdd(MapRecord.create(rawKey(Queues.deadLetter(stream)), entry),
+                    XAddOptions.maxlen(DEAD_LETTER_MAXLEN).approximateTrimming(true));
+            connection.streamCommands().xAck(key, GROUP, recordId);
+            connection.streamCommands().xDel(key, recordId);
+            return null;
+        });
+    }
+
+    private static byte[] fieldValue(Map<byte[], byte[]> body) {
+        if (body == null) return null;
+        byte[] field = rawKey(FIELD);
+        for (Map.Entry<byte[], byte[]> entry : body.entrySet()) {
+            if (Arrays.equals(entry.getKey(), field)) return entry.getValue();
+        }
+        return null;
+    }
+
+    // Entries written before JobEnvelope existed hold the bare job
+    private static QueuedJob toQueuedJob(String id, Object value) {
+        if (value instanceof JobEnvelope envelope) {
+            return new QueuedJob(id, envelope.getJob(), envelope.getEnqueuedAt(), envelope.getAttempt());
+        }
+        return new QueuedJob(id, value, 0, 0);
+    }
+
+    /**
+     * @return false when a partition stream does not exist (yet): nothing to read from it
+     */
+    private boolean ensureGroup(String stream) {
+        if (groupsCreated.contains(stream)) return true;
+        // Shared streams are created up front so consumers can start before anything was enqueued;
+        // partition streams are created by their first XADD, and recreating a retired one here would leak it
+        boolean shared = Arrays.asList(Queues.ALL).contains(stream);
+        try {
+            // Offset 0 so nothing enqueued earlier is skipped
+            redisTemplate.execute((RedisCallback<String>) connection ->
+                    connection.streamCommands().xGroupCreate(rawKey(stream), GROUP, ReadOffset.from("0-0"), shared));
+        } catch (DataAccessException e) {
+            String message = String.valueOf(NestedExceptionUtils.getMostSpecificCause(e).getMessage());
+            if (!shared && message.contains("requires the key to exist")) return false;
+            if (!message.contains("BUSYGROUP")) throw e;
+        }
+        groupsCreated.add(stream);
+        return true;
+    }
+
+    private boolean forgetGroupIfMissing(String stream, DataAccessException e) {
+        if (String.valueOf(NestedExceptionUtils.getMostSpecificCause(e).getMessage()).contains("NOGROUP")) {
+            groupsCreated.remove(stream);
+            return true;
+        }
+        return false;
+    }
+
+    private static String asString(Object value) {
+        return value instanceof byte[] bytes ? new String(bytes, StandardCharsets.UTF_8) : String.valueOf(value);
+    }
+
+    private static byte[] rawKey(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
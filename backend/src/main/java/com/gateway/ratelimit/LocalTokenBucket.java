@@ -0,0 +1,114 @@
+package com.gateway.ratelimit;
+
+import com.gateway.config.RateLimitProperties.Quota;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The tokens this instance has leased from a merchant's bucket in Redis and not spent yet. They are spread over
+ * a few counters (stripes); a request CASes one token off the stripe its thread starts at and only moves on to
+ * the others when that one is empty, so the hot path never locks and rarely contends. At most one lease is
+ * in flight per bucket.
+ */
+class LocalTokenBucket {
+
+    static final LocalTokenBucket UNLIMITED = new LocalTokenBucket(null, null, 1, 1);
+
+    private static final int PAD = 8; // longs per stripe, so each stripe sits on its own cache line
+
+    final String redisKey;
+    final Quota quota;
+    final long leaseSize;
+    private final int stripes;
+    private final AtomicLongArray tokens;
+    private final AtomicReference<CompletableFuture<Void>> lease = new AtomicReference<>();
+    private volatile long deniedUntilNanos;
+    private volatile long unenforcedUntilNanos;
+
+    LocalTokenBucket(String redisKey, Quota quota, long leaseSize, int stripes) {
+        this.redisKey = redisKey;
+        this.quota = quota;
+        this.leaseSize = leaseSize;
+        this.stripes = Math.max(1, stripes);
+        this.tokens = new AtomicLongArray(this.stripes * PAD);
+    }
+
+    boolean take() {
+        int start = (int) (Thread.currentThread().getId() % stripes);
+        for (int i = 0; i < stripes; i++) {
+            int index = ((start + i) % stripes) * PAD;
+            long available;
+            while ((available = tokens.get(index)) > 0) {
+                if (tokens.compareAndSet(index, available, available - 1)) return true;
+            }
+        }
+        return false;
+    }
+
+    long available() {
+        long sum = 0;
+        for (int i = 0; i < stripes; i++) sum += tokens.get(i * PAD);
+        return sum;
+    }
+
+    void add(long granted) {
+        long share = granted / stripes;
+        long rest = granted % stripes;
+        for (int i = 0; i < stripes; i++) {
+            long count = share + (i < rest ? 1 : 0);
+            if (count > 0) tokens.addAndGet(i * PAD, count);
+        }
+    }
+
+    /** Redis had no tokens left: requests that find none locally are turned away until then, without asking again. */
+    void denyFor(long ms) {
+        deniedUntilNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ms);
+    }
+
+    long retryAfterMs(long nowNanos) {
+        long remaining = deniedUntilNanos - nowNanos;
+        return remaining > 0 ? Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining)) : 0;
+    }
+
+    /** Redis could not be reached: requests that find no tokens locally go ahead until then. */
+    void unenforceFor(long ms) {
+        unenforcedUntilNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ms);
+    }
+
+    boolean unenforced(long nowNanos) {
+        return unenforcedUntilNanos - nowNanos > 0;
+    }
+
+    /**
+     * @return the lease in flight, after starting {@code fetch} on the executor if there was none
+     */
+    CompletableFuture<Void> lease(Executor executor, Runnable fetch) {
+        while (true) {
+            CompletableFuture<Void> pending = lease.get();
+            if (pending != null) return pending;
+
+            CompletableFuture<Void> started = new CompletableFuture<>();
+            if (!lease.compareAndSet(null, started)) continue;
+            try {
+                executor.execute(() -> {
+                    try {
+                        fetch.run();
+                        lease.set(null);
+                        started.complete(null);
+                    } catch (RuntimeException e) {
+                        lease.set(null);
+                        started.completeExceptionally(e);
+                    }
+                });
+            } catch (RuntimeException e) {
+                lease.set(null);
+                started.completeExceptionally(e);
+            }
+            return started;
+        }
+    }
+}
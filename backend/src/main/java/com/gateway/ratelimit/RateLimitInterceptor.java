@@ -0,0 +1,49 @@
+package com.gateway.ratelimit;
+
+import com.gateway.auth.MerchantAuthenticator;
+import com.gateway.models.Merchant;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Applies {@link RateLimited} before the controller runs, answering 429 with {@code Retry-After} when the merchant
+ * is over its quota. Requests with invalid credentials are passed on for the controller to reject; they cost only
+ * a lookup in the merchant cache.
+ */
+@Component
+public class RateLimitInterceptor implements HandlerInterceptor {
+
+    @Autowired private MerchantAuthenticator merchantAuthenticator;
+    @Autowired private RateLimiter rateLimiter;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws IOException {
+        // Long-polled reads come back through an async dispatch; they were counted when they arrived
+        if (request.getDispatcherType() == DispatcherType.ASYNC || !(handler instanceof HandlerMethod method)) return true;
+        RateLimited limited = method.getMethodAnnotation(RateLimited.class);
+        if (limited == null) return true;
+
+        Merchant merchant = merchantAuthenticator.authenticate(request.getHeader("X-Api-Key"), request.getHeader("X-Api-Secret"));
+        if (merchant == null) return true;
+
+        long retryAfterMs = rateLimiter.tryAcquire(limited.value(), merchant.getId());
+        if (retryAfterMs == 0) return true;
+
+        response.setStatus(429);
+        response.setHeader("Retry-After", String.valueOf(Math.max(1, (retryAfterMs + 999) / 1000)));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write(new JSONObject(Map.of("error", Map.of("code", "RATE_LIMITED",
+                "description", "Too many " + limited.value() + " requests; retry after the Retry-After interval"))).toString());
+        return false;
+    }
+}
@@ -0,0 +1,17 @@
+package com.gateway.ratelimit;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Counts calls to this endpoint against the merchant's quota for the named group ({@code ratelimit.groups.<name>}).
+ * Endpoints without it are not limited.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RateLimited {
+
+    String value();
+}
@@ -0,0 +1,163 @@
+package com.gateway.ratelimit;
+
+import com.gateway.config.RateLimitProperties;
+import com.gateway.config.RateLimitProperties.Quota;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Per-merchant token buckets, one per endpoint group. The bucket itself lives in Redis
+ * ({@code ratelimit:<group>:<merchant-id>}), so the limit holds across API instances, but requests are checked
+ * against tokens leased from it in chunks of about {@code lease-ms} worth of the rate. The next chunk is leased in the
+ * background once half of the current one is spent, so accepted requests normally never wait on Redis. Tokens an
+ * instance holds are already taken from the shared bucket, so instances together stay within its rate and burst;
+ * at worst one instance sits on a chunk another could have used.
+ *
+ * If Redis cannot be reached, requests are let through rather than failed: a missing rate limit is better than
+ * turning away payments.
+ */
+@Component
+public class RateLimiter {
+
+    // Refills the bucket for the time since it was last touched (Redis clock, so instances agree), then takes up to
+    // ARGV[3] tokens. Returns {granted, 0}, or {0, ms until the next token} if there were none.
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static final RedisScript<List<Long>> LEASE_SCRIPT = new DefaultRedisScript<>("""
+            local rate = tonumber(ARGV[1])
+            local burst = tonumber(ARGV[2])
+            local time = redis.call('TIME')
+            local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+            local state = redis.call('HMGET', KEYS[1], 'tokens', 'at')
+            local tokens = tonumber(state[1]) or burst
+            local at = tonumber(state[2]) or now
+            tokens = math.min(burst, tokens + math.max(0, now - at) * rate / 1000)
+            local granted = math.min(tonumber(ARGV[3]), math.floor(tokens))
+            tokens = tokens - granted
+            redis.call('HSET', KEYS[1], 'tokens', tostring(tokens), 'at', tostring(now))
+            redis.call('PEXPIRE', KEYS[1], math.ceil(burst * 1000 / rate) + 1000)
+            if granted > 0 then return {granted, 0} end
+            return {0, math.ceil((1 - tokens) * 1000 / rate)}
+            """, (Class<List<Long>>) (Class) List.class);
+
+    private record BucketKey(String group, UUID merchantId) {}
+
+    private final RateLimitProperties properties;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final MeterRegistry meterRegistry;
+    private final Cache<BucketKey, LocalTokenBucket> buckets;
+    private final ExecutorService leaseExecutor;
+    private final Counter unenforced;
+
+    public RateLimiter(RateLimitProperties properties, StringRedisTemplate stringRedisTemplate, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.meterRegistry = meterRegistry;
+        // Unused buckets are dropped along with their leftover tokens; those are at most one lease per bucket
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxBuckets())
+                .expireAfterAccess(properties.getBucketIdleSeconds(), TimeUnit.SECONDS)
+                .build();
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.leaseExecutor = Executors.newFixedThreadPool(Math.max(1, properties.getLeaseThreads()), r -> {
+            Thread t = new Thread(r, "ratelimit-lease-" + threadIndex.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.unenforced = Counter.builder("gateway.ratelimit.unenforced")
+                .description("Requests let through unchecked because no quota could be leased from Redis in time")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Takes one token from the merchant's quota for the group.
+     *
+     * @return 0 if the request may go ahead, otherwise how many ms until it is worth retrying
+     */
+    public long tryAcquire(String group, UUID merchantId) {
+        if (!properties.isEnabled()) return 0;
+        LocalTokenBucket bucket = buckets.get(new BucketKey(group, merchantId), this::newBucket);
+        if (bucket == LocalTokenBucket.UNLIMITED) return 0;
+
+        long now = System.nanoTime();
+        if (bucket.take()) {
+            // Lease the next chunk before this one runs out
+            if (bucket.available() <= bucket.leaseSize / 2 && bucket.retryAfterMs(now) == 0) lease(bucket);
+            return 0;
+        }
+        long retryAfterMs = bucket.retryAfterMs(now);
+        if (retryAfterMs > 0) return rejected(group, retryAfterMs);
+        if (bucket.unenforced(now)) {
+            unenforced.increment();
+            return 0;
+        }
+
+        // Nothing held locally: first request in a while, or spent faster than the background lease came back
+        try {
+            lease(bucket).get(properties.getLeaseTimeoutMs(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            unenforced.increment();
+            return 0;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 0;
+        }
+        if (bucket.take()) return 0;
+        retryAfterMs = bucket.retryAfterMs(System.nanoTime());
+        return rejected(group, Math.max(retryAfterMs, (long) Math.ceil(1000 / bucket.quota.ratePerSecond())));
+    }
+
+    private LocalTokenBucket newBucket(BucketKey key) {
+        Quota quota = properties.quota(key.merchantId().toString(), key.group());
+        if (quota == null) return LocalTokenBucket.UNLIMITED;
+        long leaseSize = Math.min(quota.burst(), Math.max(1, (long) Math.ceil(quota.ratePerSecond() * properties.getLeaseMs() / 1000.0)));
+        return new LocalTokenBucket("ratelimit:" + key.group() + ":" + key.merchantId(), quota, leaseSize, properties.getStripes());
+    }
+
+    private CompletableFuture<Void> lease(LocalTokenBucket bucket) {
+        return bucket.lease(leaseExecutor, () -> {
+            try {
+                List<Long> result = stringRedisTemplate.execute(LEASE_SCRIPT, List.of(bucket.redisKey),
+                        String.valueOf(bucket.quota.ratePerSecond()), String.valueOf(bucket.quota.burst()), String.valueOf(bucket.leaseSize));
+                long granted = result.get(0);
+                if (granted > 0) {
+                    bucket.add(granted);
+                } else {
+                    bucket.denyFor(result.get(1));
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Rate limit lease for " + bucket.redisKey + " failed, not enforcing it for "
+                        + properties.getUnenforcedMs() + "ms: " + e.getMessage());
+                bucket.unenforceFor(properties.getUnenforcedMs());
+                throw e;
+            }
+        });
+    }
+
+    private long rejected(String group, long retryAfterMs) {
+        meterRegistry.counter("gateway.ratelimit.rejected", "group", group).increment();
+        return retryAfterMs;
+    }
+
+    @PreDestroy
+    public void stop() {
+        leaseExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,7 @@
+package com.gateway.repositories;
+
+import com.gateway.models.OutboxEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface OutboxEntryRepository extends JpaRepository<OutboxEntry, Long> {
+}
@@ -2,8 +2,27 @@ package com.gateway.repositories;
 
 import com.gateway.models.Payment;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
 
 public interface PaymentRepository extends JpaRepository<Payment, String> {
     // New method to count payments by status (e.g., "success", "failed", "pending")
     long countByStatus(String status);
-}
\ No newline at end of file
+
+    // Reserves part of a successful payment for a refund. Returns 0 if the payment would be over-refunded.
+    @Modifying
+    @Query("UPDATE Payment p SET p.refundedAmount = p.refundedAmount + :amount " +
+           "WHERE p.id = :id AND p.status = 'success' AND p.refundedAmount + :amount <= p.amount")
+    int addRefundedAmount(@Param("id") String id, @Param("amount") int amount);
+
+    // Records the bank's answer with one UPDATE instead of loading and merging the payment.
+    // Returns 0 if the payment was already settled (the job ran twice).
+    @Modifying
+    @Query("UPDATE Payment p SET p.status = :status, p.errorCode = :errorCode, p.errorDescription = :errorDescription, " +
+           "p.updatedAt = :updatedAt WHERE p.id = :id AND p.status = 'pending'")
+    int settle(@Param("id") String id, @Param("status") String status, @Param("errorCode") String errorCode,
+               @Param("errorDescription") String errorDescription, @Param("updatedAt") LocalDateTime updatedAt);
+}
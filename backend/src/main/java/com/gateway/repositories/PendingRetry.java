@@ -0,0 +1,13 @@
+package com.gateway.repositories;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// What the delay queue needs to reschedule a webhook retry; no payload or response body
+public interface PendingRetry {
+    UUID getId();
+    UUID getMerchantId();
+    Integer getAttempts();
+    LocalDateTime getNextRetryAt();
+    LocalDateTime getCreatedAt();
+}
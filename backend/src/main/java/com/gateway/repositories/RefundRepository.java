@@ -2,8 +2,16 @@ package com.gateway.repositories;
 
 import com.gateway.models.Refund;
 import org.springframework.data.jpa.repository.JpaRepository;
-import java.util.List;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
 
 public interface RefundRepository extends JpaRepository<Refund, String> {
-    List<Refund> findByPaymentId(String paymentId);
-}
\ No newline at end of file
+
+    // Returns 0 if the refund was already processed (the job ran twice)
+    @Modifying
+    @Query("UPDATE Refund r SET r.status = 'processed', r.processedAt = :processedAt WHERE r.id = :id AND r.status = 'pending'")
+    int markProcessed(@Param("id") String id, @Param("processedAt") LocalDateTime processedAt);
+}
@@ -1,15 +1,59 @@
 package com.gateway.repositories;
 
 import com.gateway.models.WebhookLog;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 public interface WebhookLogRepository extends JpaRepository<WebhookLog, UUID> {
-    // Find logs that are 'pending' and the retry time has passed
-    List<WebhookLog> findByStatusAndNextRetryAtBefore(String status, LocalDateTime now);
-    
-    // Find all logs for a specific merchant (for the dashboard)
-    List<WebhookLog> findByMerchantIdOrderByCreatedAtDesc(UUID merchantId);
-}
\ No newline at end of file
+    // By the full primary key, so Postgres only looks in the log's partition (findById probes every one)
+    Optional<WebhookLog> findByIdAndCreatedAt(UUID id, LocalDateTime createdAt);
+
+    // Pending logs waiting for a retry after a failed attempt (to rebuild the delay queue), oldest retry first.
+    // First attempts (attempts = 0) are left out: their jobs are on the webhook streams, not in the delay queue.
+    // Walks the partial idx_webhook_logs_pending_retry.
+    @Query("SELECT w.id AS id, w.merchantId AS merchantId, w.attempts AS attempts, w.nextRetryAt AS nextRetryAt, w.createdAt AS createdAt " +
+           "FROM WebhookLog w WHERE w.status = 'pending' AND w.attempts > 0 AND w.nextRetryAt IS NOT NULL " +
+           "ORDER BY w.nextRetryAt, w.id")
+    List<PendingRetry> findPendingRetries(Pageable pageable);
+
+    // Page strictly after the (nextRetryAt, id) cursor of the previous page's last row
+    @Query("SELECT w.id AS id, w.merchantId AS merchantId, w.attempts AS attempts, w.nextRetryAt AS nextRetryAt, w.createdAt AS createdAt " +
+           "FROM WebhookLog w WHERE w.status = 'pending' AND w.attempts > 0 " +
+           "AND w.nextRetryAt >= :nextRetryAt AND (w.nextRetryAt > :nextRetryAt OR w.id > :id) " +
+           "ORDER BY w.nextRetryAt, w.id")
+    List<PendingRetry> findPendingRetriesAfter(@Param("nextRetryAt") LocalDateTime nextRetryAt,
+                                               @Param("id") UUID id,
+                                               Pageable pageable);
+
+    // Newest page of a merchant's logs (for the dashboard); walks idx_webhook_logs_merchant_created backwards
+    @Query("SELECT w.id AS id, w.event AS event, w.status AS status, w.attempts AS attempts, " +
+           "w.lastAttemptAt AS lastAttemptAt, w.nextRetryAt AS nextRetryAt, w.responseCode AS responseCode, w.createdAt AS createdAt " +
+           "FROM WebhookLog w WHERE w.merchantId = :merchantId " +
+           "AND (:status IS NULL OR w.status = :status) AND (:event IS NULL OR w.event = :event) " +
+           "ORDER BY w.createdAt DESC, w.id DESC")
+    List<WebhookLogSummary> findPage(@Param("merchantId") UUID merchantId,
+                                     @Param("status") String status,
+                                     @Param("event") String event,
+                                     Pageable pageable);
+
+    // Page strictly after the (createdAt, id) cursor of the previous page's last row
+    @Query("SELECT w.id AS id, w.event AS event, w.status AS status, w.attempts AS attempts, " +
+           "w.lastAttemptAt AS lastAttemptAt, w.nextRetryAt AS nextRetryAt, w.responseCode AS responseCode, w.createdAt AS createdAt " +
+           "FROM WebhookLog w WHERE w.merchantId = :merchantId " +
+           "AND w.createdAt <= :createdAt AND (w.createdAt < :createdAt OR w.id < :id) " +
+           "AND (:status IS NULL OR w.status = :status) AND (:event IS NULL OR w.event = :event) " +
+           "ORDER BY w.createdAt DESC, w.id DESC")
+    List<WebhookLogSummary> findPageAfter(@Param("merchantId") UUID merchantId,
+                                          @Param("createdAt") LocalDateTime createdAt,
+                                          @Param("id") UUID id,
+                                          @Param("status") String status,
+                                          @Param("event") String event,
+                                          Pageable pageable);
+}
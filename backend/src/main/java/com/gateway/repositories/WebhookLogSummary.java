@@ -0,0 +1,16 @@
+package com.gateway.repositories;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// List view of a webhook log: everything except the payload and response body
+public interface WebhookLogSummary {
+    UUID getId();
+    String getEvent();
+    String getStatus();
+    Integer getAttempts();
+    LocalDateTime getLastAttemptAt();
+    LocalDateTime getNextRetryAt();
+    Integer getResponseCode();
+    LocalDateTime getCreatedAt();
+}
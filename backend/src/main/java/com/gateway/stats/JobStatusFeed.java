@@ -0,0 +1,98 @@
+package com.gateway.stats;
+
+import com.gateway.queue.QueueStats;
+import com.gateway.queue.Queues;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The numbers behind the dashboard status cards, pushed to browsers over Server-Sent Events.
+ * The status is read once per tick no matter how many dashboards are open, and only changed fields are sent.
+ */
+@Component
+public class JobStatusFeed {
+
+    @Autowired private QueueStatsCache queueStats;
+    @Autowired private PaymentStatusCounters paymentStatusCounters;
+
+    @Value("${stats.sse-timeout-ms:1800000}")
+    private long sseTimeoutMs;
+
+    private final CopyOnWriteArrayList<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+    private volatile Map<String, Object> last = Map.of();
+
+    public Map<String, Object> currentStatus() {
+        // 1. Jobs waiting in Redis (not yet picked up) and jobs a worker holds but has not acked
+        long pendingInRedis = 0;
+        long processingCount = 0;
+        for (String queue : Queues.ALL) {
+            QueueStats stats = queueStats.get(queue);
+            pendingInRedis += stats.getLag();
+            processingCount += stats.getPending();
+        }
+
+        // 2. Completed payments (success + failed) from the counters, not the table
+        Map<String, Long> payments = paymentStatusCounters.snapshot();
+
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("pending", pendingInRedis);
+        status.put("processing", processingCount);
+        status.put("completed", payments.get("success") + payments.get("failed"));
+        status.put("worker_status", "running");
+        return status;
+    }
+
+    public SseEmitter subscribe() throws IOException {
+        SseEmitter emitter = new SseEmitter(sseTimeoutMs);
+        emitter.onCompletion(() -> emitters.remove(emitter));
+        emitter.onTimeout(() -> emitters.remove(emitter));
+        emitter.onError(e -> emitters.remove(emitter));
+
+        // Full status first, deltas after
+        Map<String, Object> current = last.isEmpty() ? currentStatus() : last;
+        emitter.send(SseEmitter.event().name("status").data(current));
+        emitters.add(emitter);
+        return emitter;
+    }
+
+    @Scheduled(fixedDelayString = "${stats.sse-interval-ms:1000}")
+    public void publish() {
+        if (emitters.isEmpty()) {
+            last = Map.of(); // The next subscriber gets a fresh read
+            return;
+        }
+
+        Map<String, Object> current;
+        try {
+            current = currentStatus();
+        } catch (Exception e) {
+            System.err.println("Failed to read job status: " + e.getMessage());
+            return;
+        }
+
+        Map<String, Object> delta = new LinkedHashMap<>();
+        current.forEach((field, value) -> {
+            if (!Objects.equals(value, last.get(field))) delta.put(field, value);
+        });
+        last = current;
+        if (delta.isEmpty()) return;
+
+        for (SseEmitter emitter : emitters) {
+            try {
+                emitter.send(SseEmitter.event().name("delta").data(delta));
+            } catch (Exception e) {
+                // Browser went away; completeWithError triggers onError, which removes it
+                emitter.completeWithError(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.gateway.stats;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Payment counts by status, kept in the Redis hash {@code stats:payments} so the dashboard never counts rows.
+ * Every status change is added to a local LongAdder and the deltas are flushed with HINCRBY every few hundred
+ * milliseconds. A periodic GROUP BY over payments (run by one instance at a time) corrects any drift,
+ * e.g. from a crash between a commit and the next flush.
+ */
+@Component
+public class PaymentStatusCounters {
+
+    static final String KEY = "stats:payments";
+    private static final String RECONCILE_LOCK = KEY + ":reconcile";
+    private static final List<String> STATUSES = List.of("pending", "success", "failed");
+
+    @Autowired private StringRedisTemplate stringRedisTemplate;
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    private final Map<String, LongAdder> deltas = new ConcurrentHashMap<>();
+
+    public void created(String status) {
+        add(status, 1);
+    }
+
+    public void transitioned(String from, String to) {
+        if (from.equals(to)) return;
+        add(from, -1);
+        add(to, 1);
+    }
+
+    private void add(String status, long delta) {
+        deltas.computeIfAbsent(status, s -> new LongAdder()).add(delta);
+    }
+
+    @Scheduled(fixedDelayString = "${stats.flush-interval-ms:500}")
+    @PreDestroy
+    public void flush() {
+        Map<String, Long> pending = new HashMap<>();
+        deltas.forEach((status, adder) -> {
+            long sum = adder.sum();
+            if (sum != 0) pending.put(status, sum);
+        });
+        if (pending.isEmpty()) return;
+
+        try {
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection redis = (StringRedisConnection) connection;
+                pending.forEach((status, delta) -> redis.hIncrBy(KEY, status, delta));
+                return null;
+            });
+            // Subtract what was sent rather than resetting, so increments made meanwhile are kept
+            pending.forEach((status, delta) -> deltas.get(status).add(-delta));
+        } catch (Exception e) {
+            System.err.println("Failed to flush payment counters, will retry: " + e.getMessage());
+        }
+    }
+
+    public Map<String, Long> snapshot() {
+        Map<Object, Object> raw = stringRedisTemplate.opsForHash().entries(KEY);
+        Map<String, Long> counts = new HashMap<>();
+        for (String status : STATUSES) {
+            Object value = raw.get(status);
+            counts.put(status, value != null ? Long.parseLong(value.toString()) : 0L);
+        }
+        return counts;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${stats.reconcile-interval-ms:600000}", initialDelayString = "${stats.reconcile-interval-ms:600000}")
+    public void reconcile() {
+        try {
+            Boolean locked = stringRedisTemplate.opsForValue().setIfAbsent(RECONCILE_LOCK, "1", Duration.ofMinutes(1));
+            if (!Boolean.TRUE.equals(locked)) return;
+
+            flush();
+            Map<String, String> counts = new HashMap<>();
+            STATUSES.forEach(status -> counts.put(status, "0"));
+            jdbcTemplate.query("SELECT status, COUNT(*) FROM payments GROUP BY status",
+                    rs -> { counts.put(rs.getString(1), String.valueOf(rs.getLong(2))); });
+            stringRedisTemplate.opsForHash().putAll(KEY, counts);
+        } catch (Exception e) {
+            System.err.println("Failed to reconcile payment counters: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.gateway.stats;
+
+import com.gateway.queue.DelayQueue;
+import com.gateway.queue.Queues;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Queue depth gauges. They read Redis when scraped, so they cost nothing between scrapes; both gauges of a queue
+ * share one read of its partitions through {@link QueueStatsCache}.
+ * Wait and processing times are recorded by the worker pools.
+ */
+@Component
+public class QueueMetrics {
+
+    @Autowired private QueueStatsCache queueStats;
+    @Autowired private DelayQueue delayQueue;
+    @Autowired private MeterRegistry meterRegistry;
+
+    @PostConstruct
+    public void register() {
+        for (String queue : Queues.ALL) {
+            Gauge.builder("gateway.queue.depth", queueStats, q -> q.get(queue).getLag())
+                    .description("Jobs in the stream: waiting for a consumer, or delivered but not yet acked")
+                    .tags("queue", queue, "state", "waiting")
+                    .register(meterRegistry);
+            Gauge.builder("gateway.queue.depth", queueStats, q -> q.get(queue).getPending())
+                    .tags("queue", queue, "state", "in_progress")
+                    .register(meterRegistry);
+        }
+        Gauge.builder("gateway.queue.delayed", delayQueue, q -> q.size(Queues.WEBHOOKS))
+                .description("Webhook retries waiting for their due time")
+                .tag("queue", Queues.WEBHOOKS)
+                .register(meterRegistry);
+    }
+}
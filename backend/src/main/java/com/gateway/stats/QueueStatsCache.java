@@ -0,0 +1,31 @@
+package com.gateway.stats;
+
+import com.gateway.queue.JobQueue;
+import com.gateway.queue.QueueStats;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link JobQueue#stats} of each queue, reused for {@code stats.queue-stats-ttl-ms}. Reading them runs a script on
+ * every partition stream of the queue, so the metrics gauges and the dashboard feed share one read per queue
+ * instead of each doing their own on every scrape and tick. Concurrent callers wait for the same read.
+ */
+@Component
+public class QueueStatsCache {
+
+    private final LoadingCache<String, QueueStats> stats;
+
+    public QueueStatsCache(JobQueue jobQueue, @Value("${stats.queue-stats-ttl-ms:1000}") long ttlMs) {
+        this.stats = Caffeine.newBuilder()
+                .expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS)
+                .build(jobQueue::stats);
+    }
+
+    public QueueStats get(String queue) {
+        return stats.get(queue);
+    }
+}
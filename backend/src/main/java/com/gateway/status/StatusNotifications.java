@@ -0,0 +1,170 @@
+package com.gateway.status;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Payment and refund status changes over Redis pub/sub, so API requests can wait for one instead of polling.
+ * Workers {@link #publish} after the new status commits; every instance holds its waiters as futures keyed by id,
+ * completed from the one shared subscriber connection. A waiter costs a map entry, not a thread.
+ *
+ * Pub/sub is fire-and-forget: a waiter that misses a message just times out and the caller reads the database.
+ */
+@Component
+public class StatusNotifications implements MessageListener {
+
+    public static final String PAYMENTS_CHANNEL = "status:payments";
+    public static final String REFUNDS_CHANNEL = "status:refunds";
+
+    @Autowired private StringRedisTemplate stringRedisTemplate;
+    @Autowired private RedisMessageListenerContainer listenerContainer;
+    @Autowired private MeterRegistry meterRegistry;
+
+    @Value("${status.wait.max-seconds:30}")
+    private int maxWaitSeconds;
+
+    @Value("${status.wait.render-threads:8}")
+    private int renderThreads;
+
+    @Value("${status.wait.render-queue:10000}")
+    private int renderQueue;
+
+    // Reads and renders the entity once a waiter's status arrives, off the Redis listener threads
+    private ThreadPoolExecutor renderExecutor;
+
+    // "<channel> <id>" -> futures completed with the new status
+    private final Map<String, List<CompletableFuture<String>>> waiters = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void subscribe() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        renderExecutor = new ThreadPoolExecutor(renderThreads, renderThreads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(renderQueue), r -> {
+                    Thread t = new Thread(r, "status-render-" + threadIndex.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        listenerContainer.addMessageListener(this, List.of(new ChannelTopic(PAYMENTS_CHANNEL), new ChannelTopic(REFUNDS_CHANNEL)));
+        Gauge.builder("gateway.status.waiters", waiters, Map::size)
+                .description("Payments and refunds with at least one request waiting for a status change")
+                .register(meterRegistry);
+    }
+
+    public void publish(String channel, String id, String status) {
+        try {
+            stringRedisTemplate.convertAndSend(channel, id + " " + status);
+        } catch (Exception e) {
+            // Waiters fall back to their timeout; the status itself is already committed
+            System.err.println("Failed to publish status of " + id + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Completes with the next status published for {@code id}. Register before reading the current status,
+     * so a change in between is not missed, and {@link #cancel} once no longer interested.
+     */
+    public CompletableFuture<String> await(String channel, String id) {
+        CompletableFuture<String> waiter = new CompletableFuture<>();
+        // compute, not computeIfAbsent + add, so a message removing the list at the same time cannot drop the waiter
+        waiters.compute(key(channel, id), (k, list) -> {
+            List<CompletableFuture<String>> waiting = list != null ? list : new CopyOnWriteArrayList<>();
+            waiting.add(waiter);
+            return waiting;
+        });
+        return waiter;
+    }
+
+    /**
+     * Answers a GET for a payment or refund. While the entity is pending and {@code waitSeconds} is positive, the
+     * response is held (without a request thread) until its status is published or the wait runs out; either way
+     * the answer reflects the database at that moment.
+     *
+     * @param load the entity if it exists and the caller may see it
+     */
+    public <T> DeferredResult<ResponseEntity<?>> respond(String channel, String id, int waitSeconds,
+                                                        Supplier<Optional<T>> load, Predicate<T> pending,
+                                                        Function<T, ResponseEntity<?>> render, ResponseEntity<?> notFound) {
+        long waitMs = TimeUnit.SECONDS.toMillis(Math.min(Math.max(waitSeconds, 0), maxWaitSeconds));
+        Supplier<ResponseEntity<?>> answer = () -> load.get().<ResponseEntity<?>>map(render).orElse(notFound);
+        if (waitMs == 0) return completed(answer.get());
+
+        CompletableFuture<String> waiter = await(channel, id);
+        Optional<T> current = load.get();
+        if (current.isEmpty() || !pending.test(current.get())) {
+            cancel(channel, id, waiter);
+            return completed(current.<ResponseEntity<?>>map(render).orElse(notFound));
+        }
+
+        DeferredResult<ResponseEntity<?>> result = new DeferredResult<>(waitMs);
+        result.onTimeout(() -> result.setResult(answer.get())); // Also covers a missed message
+        result.onCompletion(() -> cancel(channel, id, waiter));
+        // Waiters complete on a Redis listener thread, shared with merchant invalidation, so the database read runs on
+        // the bounded render pool; if that is full the request is answered at its timeout instead
+        waiter.thenRunAsync(() -> result.setResult(answer.get()), renderExecutor);
+        return result;
+    }
+
+    public static DeferredResult<ResponseEntity<?>> completed(ResponseEntity<?> response) {
+        DeferredResult<ResponseEntity<?>> result = new DeferredResult<>();
+        result.setResult(response);
+        return result;
+    }
+
+    public void cancel(String channel, String id, CompletableFuture<String> waiter) {
+        waiters.computeIfPresent(key(channel, id), (k, list) -> {
+            list.remove(waiter);
+            return list.isEmpty() ? null : list;
+        });
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String channel = new String(message.getChannel(), StandardCharsets.UTF_8);
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int space = body.indexOf(' ');
+        if (space < 0) return;
+
+        List<CompletableFuture<String>> waiting = waiters.remove(key(channel, body.substring(0, space)));
+        if (waiting == null) return;
+        String status = body.substring(space + 1);
+        for (CompletableFuture<String> waiter : waiting) {
+            waiter.complete(status);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        renderExecutor.shutdownNow();
+    }
+
+    private static String key(String channel, String id) {
+        return channel + " " + id;
+    }
+}
@@ -0,0 +1,15 @@
+package com.gateway.webhooks;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class DeliveryResult {
+    private Integer statusCode; // null when the request never got a response
+    private String body;
+
+    public boolean isSuccess() {
+        return statusCode != null && statusCode >= 200 && statusCode < 300;
+    }
+}
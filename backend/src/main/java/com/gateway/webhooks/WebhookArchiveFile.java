@@ -0,0 +1,275 @@
+package com.gateway.webhooks;
+
+import com.gateway.models.WebhookLog;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Columnar archive of webhook logs: one deflate-compressed block per column, so similar values
+ * (events, statuses, merchant ids, payloads of the same shape) compress together.
+ *
+ * Layout: "WLA1", row count (int), column count (int), then per column its name (UTF) and block
+ * length (long), followed by the blocks in the same order. Nullable values carry a presence byte;
+ * strings are length-prefixed UTF-8.
+ */
+final class WebhookArchiveFile {
+
+    private static final byte[] MAGIC = "WLA1".getBytes(StandardCharsets.US_ASCII);
+
+    private interface Codec<T> {
+        void write(DataOutputStream out, T value) throws IOException;
+        T read(DataInputStream in) throws IOException;
+    }
+
+    private record Column<T>(String name, Codec<T> codec, Function<WebhookLog, T> getter, BiConsumer<WebhookLog, T> setter) {
+        void write(DataOutputStream out, WebhookLog log) throws IOException {
+            codec.write(out, getter.apply(log));
+        }
+
+        void read(DataInputStream in, WebhookLog log) throws IOException {
+            setter.accept(log, codec.read(in));
+        }
+    }
+
+    private static final Codec<UUID> UUIDS = nullable(new Codec<>() {
+        public void write(DataOutputStream out, UUID value) throws IOException {
+            out.writeLong(value.getMostSignificantBits());
+            out.writeLong(value.getLeastSignificantBits());
+        }
+
+        public UUID read(DataInputStream in) throws IOException {
+            return new UUID(in.readLong(), in.readLong());
+        }
+    });
+
+    private static final Codec<String> STRINGS = nullable(new Codec<>() {
+        public void write(DataOutputStream out, String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        public String read(DataInputStream in) throws IOException {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    });
+
+    private static final Codec<Integer> INTS = nullable(new Codec<>() {
+        public void write(DataOutputStream out, Integer value) throws IOException {
+            out.writeInt(value);
+        }
+
+        public Integer read(DataInputStream in) throws IOException {
+            return in.readInt();
+        }
+    });
+
+    // Stored as the wall-clock value Postgres holds in a TIMESTAMP column (no time zone applied)
+    private static final Codec<LocalDateTime> TIMESTAMPS = nullable(new Codec<>() {
+        public void write(DataOutputStream out, LocalDateTime value) throws IOException {
+            out.writeLong(value.toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(value.getNano());
+        }
+
+        public LocalDateTime read(DataInputStream in) throws IOException {
+            return LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+        }
+    });
+
+    private static final List<Column<?>> COLUMNS = List.of(
+            new Column<>("id", UUIDS, WebhookLog::getId, WebhookLog::setId),
+            new Column<>("merchant_id", UUIDS, WebhookLog::getMerchantId, WebhookLog::setMerchantId),
+            new Column<>("event", STRINGS, WebhookLog::getEvent, WebhookLog::setEvent),
+            new Column<>("status", STRINGS, WebhookLog::getStatus, WebhookLog::setStatus),
+            new Column<>("attempts", INTS, WebhookLog::getAttempts, WebhookLog::setAttempts),
+            new Column<>("created_at", TIMESTAMPS, WebhookLog::getCreatedAt, WebhookLog::setCreatedAt),
+            new Column<>("last_attempt_at", TIMESTAMPS, WebhookLog::getLastAttemptAt, WebhookLog::setLastAttemptAt),
+            new Column<>("next_retry_at", TIMESTAMPS, WebhookLog::getNextRetryAt, WebhookLog::setNextRetryAt),
+            new Column<>("response_code", INTS, WebhookLog::getResponseCode, WebhookLog::setResponseCode),
+            new Column<>("payload", STRINGS, WebhookLog::getPayload, WebhookLog::setPayload),
+            new Column<>("response_body", STRINGS, WebhookLog::getResponseBody, WebhookLog::setResponseBody));
+
+    private WebhookArchiveFile() {
+    }
+
+    private static <T> Codec<T> nullable(Codec<T> codec) {
+        return new Codec<>() {
+            public void write(DataOutputStream out, T value) throws IOException {
+                out.writeBoolean(value != null);
+                if (value != null) codec.write(out, value);
+            }
+
+            public T read(DataInputStream in) throws IOException {
+                return in.readBoolean() ? codec.read(in) : null;
+            }
+        };
+    }
+
+    /**
+     * Streams rows into one temporary block file per column, so memory use does not grow with the row count.
+     * {@link #commit()} assembles the blocks into the target file, forces it to disk and renames it into place.
+     */
+    static final class Writer implements Closeable {
+        private final Path target;
+        private final List<Path> blockFiles = new ArrayList<>();
+        private final List<DataOutputStream> blocks = new ArrayList<>();
+        private final List<Deflater> deflaters = new ArrayList<>();
+        private int rows;
+
+        Writer(Path target) throws IOException {
+            this.target = target;
+            try {
+                for (Column<?> column : COLUMNS) {
+                    Path blockFile = target.resolveSibling(target.getFileName() + "." + column.name() + ".tmp");
+                    blockFiles.add(blockFile);
+                    OutputStream file = Files.newOutputStream(blockFile);
+                    Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+                    deflaters.add(deflater);
+                    blocks.add(new DataOutputStream(new DeflaterOutputStream(new BufferedOutputStream(file, 64 * 1024), deflater, 64 * 1024)));
+                }
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        void add(WebhookLog log) throws IOException {
+            for (int i = 0; i < COLUMNS.size(); i++) {
+                COLUMNS.get(i).write(blocks.get(i), log);
+            }
+            rows++;
+        }
+
+        int rows() {
+            return rows;
+        }
+
+        void commit() throws IOException {
+            for (DataOutputStream block : blocks) block.close();
+            blocks.clear();
+
+            Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024));
+                out.write(MAGIC);
+                out.writeInt(rows);
+                out.writeInt(COLUMNS.size());
+                for (int i = 0; i < COLUMNS.size(); i++) {
+                    out.writeUTF(COLUMNS.get(i).name());
+                    out.writeLong(Files.size(blockFiles.get(i)));
+                }
+                for (Path blockFile : blockFiles) {
+                    Files.copy(blockFile, out);
+                }
+                out.flush();
+                channel.force(true);
+            }
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            close();
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (DataOutputStream block : blocks) {
+                try {
+                    block.close();
+                } catch (IOException ignored) {
+                }
+            }
+            blocks.clear();
+            for (Deflater deflater : deflaters) deflater.end();
+            deflaters.clear();
+            for (Path blockFile : blockFiles) Files.deleteIfExists(blockFile);
+        }
+    }
+
+    /**
+     * Finds one log by id: scans the id block for its row number, then decodes that row from every other block.
+     */
+    static Optional<WebhookLog> find(Path file, UUID id) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            DataInputStream header = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            byte[] magic = new byte[MAGIC.length];
+            header.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)) throw new IOException("Not a webhook log archive: " + file);
+            int rows = header.readInt();
+            int columnCount = header.readInt();
+            List<String> names = new ArrayList<>(columnCount);
+            long[] offsets = new long[columnCount];
+            long offset = MAGIC.length + 8;
+            long[] lengths = new long[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                String name = header.readUTF();
+                names.add(name);
+                lengths[i] = header.readLong();
+                offset += 2 + name.getBytes(StandardCharsets.UTF_8).length + 8;
+            }
+            for (int i = 0; i < columnCount; i++) {
+                offsets[i] = offset;
+                offset += lengths[i];
+            }
+
+            int idColumn = names.indexOf("id");
+            if (idColumn < 0) throw new IOException("Archive has no id column: " + file);
+            int row = -1;
+            try (DataInputStream in = block(channel, offsets[idColumn])) {
+                for (int i = 0; i < rows; i++) {
+                    if (id.equals(UUIDS.read(in))) {
+                        row = i;
+                        break;
+                    }
+                }
+            }
+            if (row < 0) return Optional.empty();
+
+            WebhookLog log = new WebhookLog();
+            for (Column<?> column : COLUMNS) {
+                int index = names.indexOf(column.name());
+                if (index < 0) continue; // Written before the column existed
+                try (DataInputStream in = block(channel, offsets[index])) {
+                    for (int i = 0; i < row; i++) column.codec().read(in);
+                    column.read(in, log);
+                }
+            }
+            return Optional.of(log);
+        }
+    }
+
+    private static DataInputStream block(FileChannel channel, long offset) throws IOException {
+        InputStream raw = Channels.newInputStream(channel.position(offset));
+        return new DataInputStream(new BufferedInputStream(new InflaterInputStream(raw) {
+            @Override
+            public void close() throws IOException {
+                inf.end(); // Leave the shared channel open for the next block
+            }
+        }, 64 * 1024));
+    }
+}
@@ -0,0 +1,187 @@
+package com.gateway.webhooks;
+
+import com.gateway.config.WebhookRetryProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One circuit breaker per merchant webhook endpoint, so deliveries to an endpoint that is down stop costing
+ * HTTP slots and timeouts. A breaker opens when, over the last {@code window-seconds}, enough calls were made and
+ * too many of them failed (no response, 5xx or 429) or were slow. While open, deliveries are deferred without
+ * a request. After the open period a few probe requests are let through (half-open): if they all succeed the
+ * breaker closes, otherwise it opens again for twice as long, up to {@code max-open-ms}.
+ */
+@Component
+@Profile("worker")
+public class WebhookCircuitBreakers {
+
+    enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int windowSeconds;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long slowCallNanos;
+    private final double slowCallRateThreshold;
+    private final long openMs;
+    private final long maxOpenMs;
+    private final int halfOpenProbes;
+    private final Map<UUID, Breaker> breakers = new ConcurrentHashMap<>();
+
+    public WebhookCircuitBreakers(@Value("${webhooks.breaker.window-seconds:30}") int windowSeconds,
+                                  @Value("${webhooks.breaker.minimum-calls:20}") int minimumCalls,
+                                  @Value("${webhooks.breaker.failure-rate-threshold:0.5}") double failureRateThreshold,
+                                  @Value("${webhooks.breaker.slow-call-ms:2000}") long slowCallMs,
+                                  @Value("${webhooks.breaker.slow-call-rate-threshold:0.8}") double slowCallRateThreshold,
+                                  @Value("${webhooks.breaker.open-ms:30000}") long openMs,
+                                  @Value("${webhooks.breaker.max-open-ms:600000}") long maxOpenMs,
+                                  @Value("${webhooks.breaker.half-open-probes:3}") int halfOpenProbes,
+                                  MeterRegistry meterRegistry) {
+        this.windowSeconds = Math.max(1, windowSeconds);
+        this.minimumCalls = Math.max(1, minimumCalls);
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(slowCallMs);
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.openMs = openMs;
+        this.maxOpenMs = Math.max(openMs, maxOpenMs);
+        this.halfOpenProbes = Math.max(1, halfOpenProbes);
+
+        Gauge.builder("gateway.webhooks.breakers.open", this, circuits -> circuits.count(State.OPEN))
+                .description("Merchant webhook endpoints whose circuit breaker is open")
+                .register(meterRegistry);
+        Gauge.builder("gateway.webhooks.breakers.half_open", this, circuits -> circuits.count(State.HALF_OPEN))
+                .description("Merchant webhook endpoints being probed after an open period")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Asks to send one request to the merchant's endpoint. Returns 0 if it may be sent, in which case
+     * {@link #record} or {@link #release} must follow; otherwise how long to defer the delivery, in milliseconds.
+     */
+    public long tryAcquire(UUID merchantId, String url) {
+        Breaker breaker = breakers.compute(merchantId, (id, existing) ->
+                existing != null && existing.url.equals(url) ? existing : new Breaker(url)); // A new URL starts closed
+        return breaker.tryAcquire(System.currentTimeMillis());
+    }
+
+    /** Records the outcome of a request allowed by {@link #tryAcquire}. */
+    public void record(UUID merchantId, boolean failure, long latencyNanos) {
+        Breaker breaker = breakers.get(merchantId);
+        if (breaker != null) breaker.record(System.currentTimeMillis(), failure, latencyNanos >= slowCallNanos, merchantId);
+    }
+
+    /** Gives back a request allowed by {@link #tryAcquire} that was not sent after all. */
+    public void release(UUID merchantId) {
+        Breaker breaker = breakers.get(merchantId);
+        if (breaker != null) breaker.release();
+    }
+
+    // Endpoint health, not delivery success: a 4xx other than 429 means the endpoint is up and answering
+    public static boolean isFailure(DeliveryResult result) {
+        Integer status = result.getStatusCode();
+        return status == null || status >= 500 || status == 429;
+    }
+
+    private int count(State state) {
+        int count = 0;
+        for (Breaker breaker : breakers.values()) {
+            if (breaker.state == state) count++;
+        }
+        return count;
+    }
+
+    private final class Breaker {
+        private final String url;
+        // Rolling window of one-second buckets, indexed by epoch second modulo the window
+        private final long[] bucketSecond = new long[windowSeconds];
+        private final int[] calls = new int[windowSeconds];
+        private final int[] failures = new int[windowSeconds];
+        private final int[] slowCalls = new int[windowSeconds];
+
+        private volatile State state = State.CLOSED;
+        private long openUntil;
+        private long currentOpenMs = openMs;
+        private int probesInFlight;
+        private int probesSucceeded;
+
+        Breaker(String url) {
+            this.url = url;
+        }
+
+        synchronized long tryAcquire(long now) {
+            if (state == State.OPEN) {
+                if (now < openUntil) return openUntil - now;
+                state = State.HALF_OPEN;
+                probesInFlight = 0;
+                probesSucceeded = 0;
+            }
+            if (state == State.HALF_OPEN) {
+                // Probe slots taken: come back after another open period rather than spin on the delay queue
+                if (probesInFlight + probesSucceeded >= halfOpenProbes) return currentOpenMs;
+                probesInFlight++;
+            }
+            return 0;
+        }
+
+        synchronized void release() {
+            if (state == State.HALF_OPEN && probesInFlight > 0) probesInFlight--;
+        }
+
+        synchronized void record(long now, boolean failure, boolean slow, UUID merchantId) {
+            if (state == State.HALF_OPEN) {
+                if (probesInFlight > 0) probesInFlight--;
+                if (failure || slow) {
+                    open(now, Math.min(maxOpenMs, currentOpenMs * 2), merchantId);
+                } else if (++probesSucceeded >= halfOpenProbes) {
+                    state = State.CLOSED;
+                    currentOpenMs = openMs;
+                    Arrays.fill(calls, 0);
+                    Arrays.fill(failures, 0);
+                    Arrays.fill(slowCalls, 0);
+                    System.out.println("✅ Webhook circuit for merchant " + merchantId + " closed");
+                }
+                return;
+            }
+            if (state == State.OPEN) return; // Sent before the breaker opened
+
+            long second = now / 1000;
+            int bucket = (int) (second % windowSeconds);
+            if (bucketSecond[bucket] != second) {
+                bucketSecond[bucket] = second;
+                calls[bucket] = 0;
+                failures[bucket] = 0;
+                slowCalls[bucket] = 0;
+            }
+            calls[bucket]++;
+            if (failure) failures[bucket]++;
+            if (slow) slowCalls[bucket]++;
+
+            int totalCalls = 0, totalFailures = 0, totalSlow = 0;
+            for (int i = 0; i < windowSeconds; i++) {
+                if (second - bucketSecond[i] >= windowSeconds) continue; // Stale bucket
+                totalCalls += calls[i];
+                totalFailures += failures[i];
+                totalSlow += slowCalls[i];
+            }
+            if (totalCalls < minimumCalls) return;
+            if (totalFailures >= failureRateThreshold * totalCalls || totalSlow >= slowCallRateThreshold * totalCalls) {
+                open(now, openMs, merchantId);
+            }
+        }
+
+        private void open(long now, long duration, UUID merchantId) {
+            state = State.OPEN;
+            currentOpenMs = duration;
+            openUntil = now + WebhookRetryProperties.jittered(duration, 0.1);
+            System.out.println("⚡ Webhook circuit for merchant " + merchantId + " opened for " + duration / 1000 + "s");
+        }
+    }
+}
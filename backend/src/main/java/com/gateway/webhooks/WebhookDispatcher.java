@@ -0,0 +1,159 @@
+package com.gateway.webhooks;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends webhooks without blocking worker threads.
+ * One shared HttpClient keeps connections alive per merchant host and multiplexes over HTTP/2 where the
+ * merchant supports it. A global permit pool bounds total in-flight requests (callers block when it is
+ * exhausted), and a per-merchant pool keeps one slow endpoint from taking all of them.
+ */
+@Component
+@Profile("worker")
+public class WebhookDispatcher {
+
+    private static final int MAX_RESPONSE_BODY_CHARS = 4096;
+
+    // Index = status code / 100; 0 means no response (timeout, connection refused, bad URL)
+    private static final String[] STATUS_CLASSES = {"error", "1xx", "2xx", "3xx", "4xx", "5xx"};
+
+    // Looked up once per merchant, so recording a delivery allocates nothing
+    private record MerchantMeters(Timer latency, Counter[] responses) {}
+
+    private final Semaphore globalPermits;
+    private final int perMerchantLimit;
+    private final Duration timeout;
+    private final Map<UUID, Semaphore> merchantPermits = new ConcurrentHashMap<>();
+    private final ExecutorService callbackExecutor;
+    private final HttpClient httpClient;
+    private final MeterRegistry meterRegistry;
+    private final Map<UUID, MerchantMeters> merchantMeters = new ConcurrentHashMap<>();
+
+    public WebhookDispatcher(@Value("${webhooks.delivery.max-in-flight:2000}") int maxInFlight,
+                             @Value("${webhooks.delivery.max-in-flight-per-merchant:50}") int perMerchantLimit,
+                             @Value("${webhooks.delivery.timeout-ms:5000}") long timeoutMs,
+                             @Value("${webhooks.delivery.io-threads:4}") int ioThreads,
+                             MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.globalPermits = new Semaphore(maxInFlight);
+        this.perMerchantLimit = perMerchantLimit;
+        this.timeout = Duration.ofMillis(timeoutMs);
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.callbackExecutor = Executors.newFixedThreadPool(ioThreads, r -> {
+            Thread t = new Thread(r, "webhook-http-" + threadIndex.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(timeout)
+                .executor(callbackExecutor)
+                .build();
+    }
+
+    /**
+     * Reserves a delivery slot for the merchant. Blocks while the whole worker is at capacity;
+     * returns false straight away if only this merchant is.
+     */
+    public boolean acquire(UUID merchantId) throws InterruptedException {
+        globalPermits.acquire();
+        if (merchantPermits.computeIfAbsent(merchantId, id -> new Semaphore(perMerchantLimit)).tryAcquire()) {
+            return true;
+        }
+        globalPermits.release();
+        return false;
+    }
+
+    /**
+     * Posts the payload. Must follow a successful {@link #acquire}; the slot is released when the request finishes.
+     * The returned future never completes exceptionally: transport errors become a result with no status code.
+     */
+    public CompletableFuture<DeliveryResult> send(UUID merchantId, String url, byte[] body, String signature) {
+        long started = System.nanoTime();
+        CompletableFuture<HttpResponse<String>> response;
+        try {
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(URI.create(url))
+                    .header("Content-Type", "application/json")
+                    .header("X-Webhook-Signature", signature)
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(body)) // Already UTF-8, and the bytes that were signed
+                    .timeout(timeout)
+                    .build();
+            response = httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+        } catch (RuntimeException e) {
+            response = CompletableFuture.failedFuture(e); // e.g. a malformed webhook URL
+        }
+
+        return response.handle((res, error) -> {
+            release(merchantId);
+            record(merchantId, started, res != null ? res.statusCode() : 0);
+            if (error != null) {
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                return new DeliveryResult(null, "Error: " + cause.getMessage());
+            }
+            return new DeliveryResult(res.statusCode(), truncate(res.body()));
+        });
+    }
+
+    private void record(UUID merchantId, long started, int statusCode) {
+        MerchantMeters meters = merchantMeters.get(merchantId);
+        if (meters == null) meters = merchantMeters.computeIfAbsent(merchantId, this::registerMeters);
+        meters.latency().record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        int statusClass = statusCode / 100;
+        meters.responses()[statusClass >= 1 && statusClass <= 5 ? statusClass : 0].increment();
+    }
+
+    private MerchantMeters registerMeters(UUID merchantId) {
+        String merchant = merchantId.toString();
+        Timer latency = Timer.builder("gateway.webhooks.delivery")
+                .description("Webhook HTTP round trip, including timeouts")
+                .tag("merchant", merchant)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Counter[] responses = new Counter[STATUS_CLASSES.length];
+        for (int i = 0; i < STATUS_CLASSES.length; i++) {
+            responses[i] = Counter.builder("gateway.webhooks.responses")
+                    .tags("merchant", merchant, "status", STATUS_CLASSES[i])
+                    .register(meterRegistry);
+        }
+        return new MerchantMeters(latency, responses);
+    }
+
+    private void release(UUID merchantId) {
+        Semaphore permits = merchantPermits.get(merchantId);
+        if (permits != null) permits.release();
+        globalPermits.release();
+    }
+
+    private static String truncate(String body) {
+        if (body == null || body.length() <= MAX_RESPONSE_BODY_CHARS) return body;
+        return body.substring(0, MAX_RESPONSE_BODY_CHARS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        callbackExecutor.shutdown();
+    }
+}
@@ -0,0 +1,46 @@
+package com.gateway.webhooks;
+
+import com.gateway.models.WebhookLog;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Cold storage for webhook logs moved out of webhook_logs by WebhookLogRetention.
+ * Archive files live in webhooks.archive.dir (shared by the API and the workers);
+ * the webhook_log_archive table maps each archived log id to its file.
+ */
+@Component
+public class WebhookLogArchive {
+
+    private static final String LOCATE_SQL = "SELECT archive_file FROM webhook_log_archive WHERE id = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${webhooks.archive.dir:/var/lib/gateway/webhook-archive}")
+    private Path dir;
+
+    public Optional<WebhookLog> find(UUID id) {
+        List<String> files = jdbcTemplate.queryForList(LOCATE_SQL, String.class, id);
+        if (files.isEmpty()) return Optional.empty();
+        try {
+            return WebhookArchiveFile.find(dir.resolve(files.get(0)), id);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read archived webhook log " + id, e);
+        }
+    }
+
+    Path dir() throws IOException {
+        return Files.createDirectories(dir);
+    }
+}
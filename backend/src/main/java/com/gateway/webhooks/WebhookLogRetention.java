@@ -0,0 +1,236 @@
+package com.gateway.webhooks;
+
+import com.gateway.models.WebhookLog;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps webhook_logs (range-partitioned by created_at, one partition per day) small:
+ * creates the coming days' partitions ahead of time, and moves delivered or given-up logs older than
+ * webhooks.retention.hot-days into archive files (see WebhookLogArchive). A day whose logs are all archived
+ * is dropped as a whole partition instead of being deleted row by row.
+ */
+@Component
+@Profile("worker")
+public class WebhookLogRetention {
+
+    private static final String PARTITIONS_SQL = """
+            SELECT c.relname, pg_get_expr(c.relpartbound, c.oid)
+              FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+             WHERE i.inhparent = 'webhook_logs'::regclass""";
+
+    private static final String TERMINAL = "status IN ('success', 'failed')";
+
+    private static final String SELECT_SQL = """
+            SELECT id, merchant_id, event, payload, status, attempts, last_attempt_at, next_retry_at, response_code, response_body, created_at
+              FROM %s
+             WHERE %s AND created_at < ?""";
+
+    private static final String INDEX_SQL = """
+            INSERT INTO webhook_log_archive (id, merchant_id, created_at, archive_file)
+            SELECT id, merchant_id, created_at, ? FROM %s WHERE %s AND created_at < ?
+            ON CONFLICT (id) DO UPDATE SET archive_file = EXCLUDED.archive_file""";
+
+    private static final String LIVE_SQL = "SELECT EXISTS (SELECT 1 FROM %s WHERE status IS NULL OR NOT (%s AND created_at < ?))";
+
+    // Range partitions print as FOR VALUES FROM ('2024-05-01 00:00:00') TO ('2024-05-02 00:00:00')
+    private static final Pattern UPPER_BOUND = Pattern.compile("TO \\('([^']+)'\\)");
+    private static final DateTimeFormatter BOUND_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.BASIC_ISO_DATE;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private WebhookLogArchive webhookLogArchive;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${webhooks.retention.hot-days:14}")
+    private int hotDays;
+
+    @Value("${webhooks.retention.partitions-ahead-days:7}")
+    private int partitionsAheadDays;
+
+    @Value("${webhooks.retention.interval-ms:3600000}")
+    private long intervalMs;
+
+    @Value("${webhooks.retention.fetch-size:1000}")
+    private int fetchSize;
+
+    @Value("${webhooks.retention.drop-lock-timeout-ms:5000}")
+    private long dropLockTimeoutMs;
+
+    // Own thread: archiving a day of logs can take a while and must not hold up the shared scheduler
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "webhook-log-retention");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Counter archivedRows;
+    private Counter droppedPartitions;
+
+    @PostConstruct
+    public void start() {
+        archivedRows = Counter.builder("gateway.webhooks.archived")
+                .description("Webhook logs moved from webhook_logs to archive files")
+                .register(meterRegistry);
+        droppedPartitions = Counter.builder("gateway.webhooks.partitions.dropped")
+                .description("Daily webhook_logs partitions dropped after archiving")
+                .register(meterRegistry);
+        executor.scheduleWithFixedDelay(this::maintain, 0, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    void maintain() {
+        try {
+            createPartitions();
+        } catch (Exception e) {
+            System.err.println("Failed to create webhook log partitions: " + e.getMessage());
+        }
+        try {
+            archiveExpired();
+        } catch (Exception e) {
+            System.err.println("Failed to archive webhook logs: " + e.getMessage());
+        }
+    }
+
+    // Yesterday through partitions-ahead-days from now, so a clock skew or a late run never sends rows to the default partition
+    private void createPartitions() {
+        LocalDate today = LocalDate.now();
+        for (LocalDate day = today.minusDays(1); !day.isAfter(today.plusDays(partitionsAheadDays)); day = day.plusDays(1)) {
+            String sql = "CREATE TABLE IF NOT EXISTS webhook_logs_p" + day.format(PARTITION_SUFFIX)
+                    + " PARTITION OF webhook_logs FOR VALUES FROM ('" + day + "') TO ('" + day.plusDays(1) + "')";
+            try {
+                jdbcTemplate.execute(sql);
+            } catch (Exception e) {
+                // Overlaps the partition of pre-partitioning logs, or the default partition already holds rows for that day.
+                // Those rows are archived from where they are.
+                System.err.println("Skipped webhook log partition for " + day + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void archiveExpired() throws IOException {
+        LocalDateTime cutoff = LocalDate.now().minusDays(hotDays).atStartOfDay();
+        Path dir = webhookLogArchive.dir();
+
+        List<String[]> partitions = jdbcTemplate.query(PARTITIONS_SQL, (rs, i) -> new String[]{rs.getString(1), rs.getString(2)});
+        for (String[] partition : partitions) {
+            String name = partition[0];
+            String bound = partition[1];
+            if ("DEFAULT".equals(bound)) {
+                archive(name, cutoff, dir, false);
+                continue;
+            }
+            Matcher upper = UPPER_BOUND.matcher(bound);
+            if (upper.find() && !LocalDateTime.parse(upper.group(1), BOUND_FORMAT).isAfter(cutoff)) {
+                archive(name, cutoff, dir, true);
+            }
+        }
+    }
+
+    /**
+     * Archives one partition's terminal logs older than the cutoff, in one transaction:
+     * the archive file is written and forced to disk before its index rows and the drop (or delete) commit.
+     * A SHARE lock keeps deliveries and retries from changing the partition meanwhile; reads continue.
+     */
+    private void archive(String partition, LocalDateTime cutoff, Path dir, boolean droppable) {
+        Timestamp before = Timestamp.valueOf(cutoff);
+        transactionTemplate.executeWithoutResult(status -> {
+            // Another worker is already on this partition
+            Boolean locked = jdbcTemplate.queryForObject("SELECT pg_try_advisory_xact_lock(hashtext(?))", Boolean.class, partition);
+            if (!Boolean.TRUE.equals(locked)) return;
+            jdbcTemplate.execute("LOCK TABLE " + partition + " IN SHARE MODE");
+
+            String file = partition + "-" + System.currentTimeMillis() + ".wla";
+            int rows = writeArchive(partition, before, dir.resolve(file));
+            if (rows > 0) {
+                jdbcTemplate.update(String.format(INDEX_SQL, partition, TERMINAL), file, before);
+            }
+
+            Boolean live = jdbcTemplate.queryForObject(String.format(LIVE_SQL, partition, TERMINAL), Boolean.class, before);
+            if (droppable && !Boolean.TRUE.equals(live)) {
+                // Dropping needs a brief exclusive lock on webhook_logs; give up for this run rather than queue behind long reads
+                jdbcTemplate.execute("SET LOCAL lock_timeout = " + dropLockTimeoutMs);
+                jdbcTemplate.execute("DROP TABLE " + partition);
+                droppedPartitions.increment();
+            } else if (rows > 0) {
+                jdbcTemplate.update(String.format("DELETE FROM %s WHERE %s AND created_at < ?", partition, TERMINAL), before);
+            }
+            archivedRows.increment(rows);
+            if (rows > 0) System.out.println("🗄️ Archived " + rows + " webhook logs from " + partition + " to " + file);
+        });
+    }
+
+    private int writeArchive(String partition, Timestamp before, Path target) {
+        try (WebhookArchiveFile.Writer writer = new WebhookArchiveFile.Writer(target)) {
+            jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(String.format(SELECT_SQL, partition, TERMINAL));
+                statement.setFetchSize(fetchSize); // Streams the rows instead of loading the whole day
+                statement.setTimestamp(1, before);
+                return statement;
+            }, (ResultSet rs) -> {
+                try {
+                    writer.add(toLog(rs));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            if (writer.rows() > 0) writer.commit();
+            return writer.rows();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write webhook log archive " + target, e);
+        }
+    }
+
+    private static WebhookLog toLog(ResultSet rs) throws SQLException {
+        WebhookLog log = new WebhookLog();
+        log.setId(rs.getObject("id", UUID.class));
+        log.setMerchantId(rs.getObject("merchant_id", UUID.class));
+        log.setEvent(rs.getString("event"));
+        log.setPayload(rs.getString("payload"));
+        log.setStatus(rs.getString("status"));
+        log.setAttempts((Integer) rs.getObject("attempts"));
+        log.setLastAttemptAt(rs.getObject("last_attempt_at", LocalDateTime.class));
+        log.setNextRetryAt(rs.getObject("next_retry_at", LocalDateTime.class));
+        log.setResponseCode((Integer) rs.getObject("response_code"));
+        log.setResponseBody(rs.getString("response_body"));
+        log.setCreatedAt(rs.getObject("created_at", LocalDateTime.class));
+        return log;
+    }
+}
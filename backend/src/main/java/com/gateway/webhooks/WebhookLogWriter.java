@@ -0,0 +1,133 @@
+package com.gateway.webhooks;
+
+import com.gateway.models.WebhookLog;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persists delivery results in JDBC batches instead of one save per webhook.
+ * Only the attempt columns are written, by (id, created_at) so each update touches only the log's partition;
+ * a future completes once its row is committed, and fails if the update matched no row.
+ */
+@Component
+@Profile("worker")
+public class WebhookLogWriter {
+
+    // Public for QueryPlanTest, which checks its plan
+    public static final String UPDATE_SQL = """
+            UPDATE webhook_logs
+               SET status = ?, attempts = ?, last_attempt_at = ?, next_retry_at = ?, response_code = ?, response_body = ?
+             WHERE id = ? AND created_at = ?""";
+
+    private record PendingWrite(WebhookLog log, CompletableFuture<Void> done) {}
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${webhooks.log-writer.batch-size:200}")
+    private int batchSize;
+
+    @Value("${webhooks.log-writer.flush-interval-ms:50}")
+    private long flushIntervalMs;
+
+    private final LinkedBlockingQueue<PendingWrite> queue = new LinkedBlockingQueue<>();
+    private final Thread flusher = new Thread(this::run, "webhook-log-writer");
+    private volatile boolean active = true;
+    private Timer flushTimer;
+
+    @PostConstruct
+    public void start() {
+        flushTimer = Timer.builder("gateway.webhooks.log_writer.flush")
+                .description("One JDBC batch of webhook attempt updates")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    public CompletableFuture<Void> save(WebhookLog log) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        queue.add(new PendingWrite(log, done));
+        return done;
+    }
+
+    private void run() {
+        List<PendingWrite> batch = new ArrayList<>(batchSize);
+        while (active || !queue.isEmpty()) {
+            try {
+                PendingWrite first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<PendingWrite> batch) {
+        long started = System.nanoTime();
+        try {
+            int[][] updated = jdbcTemplate.batchUpdate(UPDATE_SQL, batch, batch.size(), (ps, write) -> {
+                WebhookLog log = write.log();
+                ps.setString(1, log.getStatus());
+                ps.setObject(2, log.getAttempts(), Types.INTEGER);
+                ps.setTimestamp(3, log.getLastAttemptAt() != null ? Timestamp.valueOf(log.getLastAttemptAt()) : null);
+                ps.setTimestamp(4, log.getNextRetryAt() != null ? Timestamp.valueOf(log.getNextRetryAt()) : null);
+                ps.setObject(5, log.getResponseCode(), Types.INTEGER);
+                ps.setString(6, log.getResponseBody());
+                ps.setObject(7, log.getId());
+                ps.setTimestamp(8, Timestamp.valueOf(log.getCreatedAt())); // Prunes to the log's partition
+            });
+            // A result that matched no row (log deleted, or created_at differs) is not saved: fail it, so its job
+            // is not acked and the next delivery finds out what happened to the log
+            int missing = 0;
+            int next = 0;
+            for (int[] counts : updated) {
+                for (int count : counts) {
+                    PendingWrite write = batch.get(next++);
+                    if (count == 0) {
+                        missing++;
+                        write.done().completeExceptionally(new IllegalStateException("Webhook log " + write.log().getId() + " matched no row"));
+                    } else {
+                        write.done().complete(null);
+                    }
+                }
+            }
+            if (missing > 0) System.err.println(missing + " webhook results matched no log row (deleted, or created_at differs)");
+        } catch (Exception e) {
+            System.err.println("Failed to persist " + batch.size() + " webhook results: " + e.getMessage());
+            batch.forEach(write -> write.done().completeExceptionally(e));
+        } finally {
+            flushTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        active = false;
+        flusher.join(TimeUnit.SECONDS.toMillis(10));
+    }
+}
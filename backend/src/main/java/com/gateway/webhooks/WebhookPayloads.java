@@ -0,0 +1,44 @@
+package com.gateway.webhooks;
+
+import com.gateway.models.Payment;
+import com.gateway.models.Refund;
+import org.json.JSONObject;
+
+/**
+ * Bodies of the webhooks sent to merchants.
+ */
+public final class WebhookPayloads {
+
+    private WebhookPayloads() {}
+
+    // payment.success / payment.failed
+    public static String payment(Payment payment) {
+        JSONObject payload = new JSONObject();
+        payload.put("event", "payment." + payment.getStatus());
+
+        JSONObject data = new JSONObject();
+        JSONObject paymentData = new JSONObject();
+        paymentData.put("id", payment.getId());
+        paymentData.put("amount", payment.getAmount());
+        paymentData.put("status", payment.getStatus());
+        paymentData.put("order_id", payment.getOrderId());
+        data.put("payment", paymentData);
+
+        payload.put("data", data);
+        return payload.toString();
+    }
+
+    // refund.processed
+    public static String refundProcessed(Refund refund) {
+        JSONObject payload = new JSONObject();
+        payload.put("event", "refund.processed");
+
+        JSONObject data = new JSONObject();
+        data.put("refund_id", refund.getId());
+        data.put("payment_id", refund.getPaymentId());
+        data.put("amount", refund.getAmount());
+        data.put("status", "processed");
+        payload.put("data", data);
+        return payload.toString();
+    }
+}
@@ -0,0 +1,64 @@
+package com.gateway.webhooks;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * HMAC-SHA256 of the webhook body, hex encoded, sent as X-Webhook-Signature.
+ * Each thread keeps initialized Macs for the secrets it has recently signed with (doFinal resets a Mac
+ * for reuse), so signing a delivery allocates only the signature string.
+ */
+public final class WebhookSigner {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int MACS_PER_THREAD = 256;
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private static final class ThreadState {
+        // Access-ordered, so the least recently used secret is dropped first
+        final Map<String, Mac> macs = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Mac> eldest) {
+                return size() > MACS_PER_THREAD;
+            }
+        };
+        final byte[] digest = new byte[32];
+        final byte[] hex = new byte[64];
+    }
+
+    private static final ThreadLocal<ThreadState> STATE = ThreadLocal.withInitial(ThreadState::new);
+
+    private WebhookSigner() {}
+
+    public static String sign(String data, String secret) throws GeneralSecurityException {
+        return sign(data.getBytes(StandardCharsets.UTF_8), secret);
+    }
+
+    /**
+     * Signs the exact bytes that will be sent as the request body.
+     */
+    public static String sign(byte[] body, String secret) throws GeneralSecurityException {
+        ThreadState state = STATE.get();
+        Mac mac = state.macs.get(secret);
+        if (mac == null) {
+            mac = Mac.getInstance(ALGORITHM);
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM));
+            state.macs.put(secret, mac);
+        }
+
+        mac.update(body);
+        mac.doFinal(state.digest, 0);
+
+        byte[] hex = state.hex;
+        for (int i = 0; i < state.digest.length; i++) {
+            int b = state.digest[i] & 0xFF;
+            hex[i * 2] = HEX[b >>> 4];
+            hex[i * 2 + 1] = HEX[b & 0x0F];
+        }
+        return new String(hex, StandardCharsets.ISO_8859_1);
+    }
+}
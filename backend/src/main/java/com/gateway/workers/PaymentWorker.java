@@ -4,24 +4,35 @@ import com.gateway.jobs.DeliverWebhookJob;
 import com.gateway.jobs.ProcessPaymentJob;
 import com.gateway.models.Payment;
 import com.gateway.models.WebhookLog;
+import com.gateway.processing.PaymentOutcome;
+import com.gateway.processing.PaymentProcessor;
+import com.gateway.outbox.JobOutbox;
+import com.gateway.queue.Queues;
 import com.gateway.repositories.PaymentRepository;
 import com.gateway.repositories.WebhookLogRepository;
+import com.gateway.stats.PaymentStatusCounters;
+import com.gateway.status.StatusNotifications;
+import com.gateway.webhooks.WebhookPayloads;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
-import org.json.JSONObject;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
-import java.util.UUID;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
 
 @Service
+@Profile("worker")
 public class PaymentWorker {
 
     @Autowired
-    private RedisTemplate<String, Object> redisTemplate;
+    private JobOutbox jobOutbox;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
 
     @Autowired
     private PaymentRepository paymentRepository;
@@ -29,98 +40,85 @@ public class PaymentWorker {
     @Autowired
     private WebhookLogRepository webhookLogRepository;
 
-    // We use a flag to keep the loop running
-    private boolean active = true;
+    @Autowired
+    private PaymentProcessor paymentProcessor;
 
-    @Async // Runs in a separate thread
-    public void start() {
-        System.out.println("✅ Payment Worker Started...");
-        
-        while (active) {
-            try {
-                // 1. Wait for a job from Redis (Blocks for 5 seconds then loops)
-                ProcessPaymentJob job = (ProcessPaymentJob) redisTemplate.opsForList().rightPop("queue:payments", 5, TimeUnit.SECONDS);
-
-                if (job != null) {
-                    processPayment(job.getPaymentId());
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+    @Autowired
+    private ThreadPoolTaskExecutor completionExecutor;
+
+    @Autowired
+    private PaymentStatusCounters paymentStatusCounters;
+
+    @Autowired
+    private StatusNotifications statusNotifications;
+
+    private final Semaphore inFlight;
+
+    public PaymentWorker(@Value("${worker.payments.max-in-flight:10000}") int maxInFlight) {
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    public CompletableFuture<Void> handle(ProcessPaymentJob job) throws InterruptedException {
+        // Blocks the consumer (and so stops it polling) once too many payments are waiting on the bank
+        inFlight.acquire();
+        try {
+            return processPayment(job.getPaymentId()).whenComplete((ignored, error) -> inFlight.release());
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
         }
     }
 
-    private void processPayment(String paymentId) {
+    private CompletableFuture<Void> processPayment(String paymentId) {
         System.out.println("Processing Payment: " + paymentId);
         
         Payment payment = paymentRepository.findById(paymentId).orElse(null);
-        if (payment == null) return;
-
-        // 2. Simulate Delay (5-10 seconds)
-        try {
-            long delay = 5000 + (long)(Math.random() * 5000); 
-            Thread.sleep(delay);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
+        // Jobs can be delivered more than once (reclaimed after a crash); only pending payments go to the bank
+        if (payment == null || !"pending".equals(payment.getStatus())) return CompletableFuture.completedFuture(null);
 
-        // 3. Determine Outcome (Random Success/Fail)
-        boolean isSuccess = determineOutcome(payment.getMethod());
+        // 2. Ask the bank; the outcome arrives later without holding this thread
+        return paymentProcessor.authorize(payment)
+                .thenAcceptAsync(outcome -> completePayment(payment, outcome), completionExecutor);
+    }
 
-        // 4. Update Database
-        if (isSuccess) {
+    private void completePayment(Payment payment, PaymentOutcome outcome) {
+        // 3. Update Database
+        if (outcome.isSuccess()) {
             payment.setStatus("success");
         } else {
             payment.setStatus("failed");
-            payment.setErrorCode("BANK_FAILURE");
-            payment.setErrorDescription("The bank rejected the transaction.");
+            payment.setErrorCode(outcome.getErrorCode());
+            payment.setErrorDescription(outcome.getErrorDescription());
         }
         payment.setUpdatedAt(LocalDateTime.now());
-        paymentRepository.save(payment);
 
-        // 5. Enqueue Webhook (Notify the merchant)
-        enqueueWebhook(payment);
-    }
+        // The status, the webhook log and its delivery job commit together; a failure leaves the job to be retried
+        Boolean settled = transactionTemplate.execute(status -> {
+            if (paymentRepository.settle(payment.getId(), payment.getStatus(), payment.getErrorCode(),
+                    payment.getErrorDescription(), payment.getUpdatedAt()) == 0) {
+                return false; // Settled by an earlier delivery of this job
+            }
 
-    private boolean determineOutcome(String method) {
-        double chance = Math.random(); // 0.0 to 1.0
-        if ("upi".equalsIgnoreCase(method)) {
-            return chance < 0.90; // 90% success for UPI
-        } else {
-            return chance < 0.95; // 95% success for Cards
-        }
+            // 4. Enqueue Webhook (Notify the merchant)
+            enqueueWebhook(payment);
+            return true;
+        });
+        if (!Boolean.TRUE.equals(settled)) return;
+        paymentStatusCounters.transitioned("pending", payment.getStatus());
+        statusNotifications.publish(StatusNotifications.PAYMENTS_CHANNEL, payment.getId(), payment.getStatus());
     }
 
     private void enqueueWebhook(Payment payment) {
-        try {
-            // Create the Payload JSON
-            JSONObject payload = new JSONObject();
-            payload.put("event", "payment." + payment.getStatus());
-            
-            JSONObject data = new JSONObject();
-            JSONObject paymentData = new JSONObject();
-            paymentData.put("id", payment.getId());
-            paymentData.put("amount", payment.getAmount());
-            paymentData.put("status", payment.getStatus());
-            paymentData.put("order_id", payment.getOrderId());
-            data.put("payment", paymentData);
-            
-            payload.put("data", data);
-
-            // Create Log Entry
-            WebhookLog log = new WebhookLog();
-            log.setMerchantId(payment.getMerchant().getId());
-            log.setEvent("payment." + payment.getStatus());
-            log.setPayload(payload.toString());
-            log.setNextRetryAt(LocalDateTime.now()); // Ready immediately
-            
-            WebhookLog savedLog = webhookLogRepository.save(log);
-
-            // Push to Webhook Queue
-            redisTemplate.opsForList().leftPush("queue:webhooks", new DeliverWebhookJob(savedLog.getId()));
-            
-        } catch (Exception e) {
-            System.err.println("Failed to enqueue webhook: " + e.getMessage());
-        }
+        // Create Log Entry
+        WebhookLog log = new WebhookLog();
+        log.setMerchantId(payment.getMerchant().getId());
+        log.setEvent("payment." + payment.getStatus());
+        log.setPayload(WebhookPayloads.payment(payment));
+        log.setNextRetryAt(LocalDateTime.now()); // Ready immediately
+
+        WebhookLog savedLog = webhookLogRepository.save(log);
+
+        // Push to Webhook Queue once committed
+        jobOutbox.add(Queues.WEBHOOKS, savedLog.getMerchantId().toString(), new DeliverWebhookJob(savedLog.getId(), savedLog.getCreatedAt()));
     }
 }
\ No newline at end of file
@@ -4,22 +4,33 @@ import com.gateway.jobs.ProcessRefundJob;
 import com.gateway.jobs.DeliverWebhookJob;
 import com.gateway.models.Refund;
 import com.gateway.models.WebhookLog;
+import com.gateway.processing.PaymentProcessor;
+import com.gateway.outbox.JobOutbox;
+import com.gateway.queue.Queues;
 import com.gateway.repositories.RefundRepository;
 import com.gateway.repositories.WebhookLogRepository;
+import com.gateway.status.StatusNotifications;
+import com.gateway.webhooks.WebhookPayloads;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
-import org.json.JSONObject;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
 
 @Service
+@Profile("worker")
 public class RefundWorker {
 
     @Autowired
-    private RedisTemplate<String, Object> redisTemplate;
+    private JobOutbox jobOutbox;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
 
     @Autowired
     private RefundRepository refundRepository;
@@ -27,64 +38,69 @@ public class RefundWorker {
     @Autowired
     private WebhookLogRepository webhookLogRepository;
 
-    private boolean active = true;
-
-    @Async
-    public void start() {
-        System.out.println("✅ Refund Worker Started...");
-        while (active) {
-            try {
-                ProcessRefundJob job = (ProcessRefundJob) redisTemplate.opsForList().rightPop("queue:refunds", 5, TimeUnit.SECONDS);
-                if (job != null) {
-                    processRefund(job.getRefundId());
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+    @Autowired
+    private PaymentProcessor paymentProcessor;
+
+    @Autowired
+    private ThreadPoolTaskExecutor completionExecutor;
+
+    @Autowired
+    private StatusNotifications statusNotifications;
+
+    private final Semaphore inFlight;
+
+    public RefundWorker(@Value("${worker.refunds.max-in-flight:2000}") int maxInFlight) {
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    public CompletableFuture<Void> handle(ProcessRefundJob job) throws InterruptedException {
+        inFlight.acquire();
+        try {
+            return processRefund(job.getRefundId()).whenComplete((ignored, error) -> inFlight.release());
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
         }
     }
 
-    private void processRefund(String refundId) {
+    private CompletableFuture<Void> processRefund(String refundId) {
         System.out.println("Processing Refund: " + refundId);
         
         Refund refund = refundRepository.findById(refundId).orElse(null);
-        if (refund == null) return;
+        if (refund == null || !"pending".equals(refund.getStatus())) return CompletableFuture.completedFuture(null);
 
-        // Simulate Processing Delay
-        try {
-            Thread.sleep(3000); 
-        } catch (InterruptedException e) {}
+        return paymentProcessor.refund(refund)
+                .thenRunAsync(() -> completeRefund(refund), completionExecutor);
+    }
 
+    private void completeRefund(Refund refund) {
         // Update Status
         refund.setStatus("processed");
         refund.setProcessedAt(LocalDateTime.now());
-        refundRepository.save(refund);
-        
-        // Enqueue Webhook
-        enqueueWebhook(refund);
+
+        // Status, webhook log and delivery job commit together
+        Boolean processed = transactionTemplate.execute(status -> {
+            if (refundRepository.markProcessed(refund.getId(), refund.getProcessedAt()) == 0) {
+                return false; // Processed by an earlier delivery of this job
+            }
+
+            // Enqueue Webhook
+            enqueueWebhook(refund);
+            return true;
+        });
+        if (!Boolean.TRUE.equals(processed)) return;
+        statusNotifications.publish(StatusNotifications.REFUNDS_CHANNEL, refund.getId(), refund.getStatus());
     }
     
     private void enqueueWebhook(Refund refund) {
-        try {
-            JSONObject payload = new JSONObject();
-            payload.put("event", "refund.processed");
-            
-            JSONObject data = new JSONObject();
-            data.put("refund_id", refund.getId());
-            data.put("payment_id", refund.getPaymentId());
-            data.put("amount", refund.getAmount());
-            data.put("status", "processed");
-            payload.put("data", data);
-
-            WebhookLog log = new WebhookLog();
-            log.setMerchantId(refund.getMerchantId());
-            log.setEvent("refund.processed");
-            log.setPayload(payload.toString());
-            log.setNextRetryAt(LocalDateTime.now());
-            
-            WebhookLog savedLog = webhookLogRepository.save(log);
-            
-            redisTemplate.opsForList().leftPush("queue:webhooks", new DeliverWebhookJob(savedLog.getId()));
-        } catch (Exception e) {}
+        WebhookLog log = new WebhookLog();
+        log.setMerchantId(refund.getMerchantId());
+        log.setEvent("refund.processed");
+        log.setPayload(WebhookPayloads.refundProcessed(refund));
+        log.setNextRetryAt(LocalDateTime.now());
+
+        WebhookLog savedLog = webhookLogRepository.save(log);
+
+        jobOutbox.add(Queues.WEBHOOKS, refund.getMerchantId().toString(), new DeliverWebhookJob(savedLog.getId(), savedLog.getCreatedAt()));
     }
 }
\ No newline at end of file
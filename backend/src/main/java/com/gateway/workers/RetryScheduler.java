@@ -1,15 +1,20 @@
 package com.gateway.workers;
 
 import com.gateway.jobs.DeliverWebhookJob;
-import com.gateway.models.WebhookLog;
+import com.gateway.queue.DelayQueue;
+import com.gateway.queue.Queues;
+import com.gateway.repositories.PendingRetry;
 import com.gateway.repositories.WebhookLogRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.annotation.Profile;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
-import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.List;
 
 @Component
@@ -20,22 +25,45 @@ public class RetryScheduler {
     private WebhookLogRepository webhookLogRepository;
 
     @Autowired
-    private RedisTemplate<String, Object> redisTemplate;
-
-    // Run every 10 seconds to check for due retries
-    @Scheduled(fixedRate = 10000)
-    public void requeuePendingWebhooks() {
-        List<WebhookLog> logsToRetry = webhookLogRepository.findByStatusAndNextRetryAtBefore("pending", LocalDateTime.now());
-
-        for (WebhookLog log : logsToRetry) {
-            // Push back to Redis
-            redisTemplate.opsForList().leftPush("queue:webhooks", new DeliverWebhookJob(log.getId()));
-            
-            // Update nextRetryAt to null so we don't pick it up again immediately
-            log.setNextRetryAt(null); 
-            webhookLogRepository.save(log);
-            
-            System.out.println("Re-queued webhook: " + log.getId());
+    private DelayQueue delayQueue;
+
+    @Value("${delay-queue.batch-size:500}")
+    private int batchSize;
+
+    // Moves due webhook retries from the delay queue onto their merchants' webhook streams.
+    // Safe to run on every worker: each batch is claimed by one Lua call before it is moved.
+    @Scheduled(fixedDelayString = "${delay-queue.poll-interval-ms:100}")
+    public void promoteDueRetries() {
+        try {
+            long moved;
+            do {
+                moved = delayQueue.promoteDue(Queues.WEBHOOKS, batchSize);
+            } while (moved == batchSize);
+        } catch (Exception e) {
+            System.err.println("Failed to promote due webhook retries: " + e.getMessage());
+        }
+    }
+
+    // Retries recorded only in the DB (scheduled before the delay queue existed, or lost with a Redis flush).
+    // Only logs with a failed attempt behind them: a first attempt's job is on the webhook stream already, so
+    // scheduling it here too would deliver it twice. A retry still in the delay queue only has its due time moved
+    // to the recorded one (which a breaker or merchant-busy deferral may have pushed further out); one already on
+    // the stream gets a second copy, which WebhookWorker drops or finds done. Read in keyset pages, ids and retry
+    // times only.
+    @EventListener(ApplicationReadyEvent.class)
+    public void schedulePendingRetries() {
+        long scheduled = 0;
+        List<PendingRetry> page = webhookLogRepository.findPendingRetries(PageRequest.of(0, batchSize));
+        while (!page.isEmpty()) {
+            for (PendingRetry retry : page) {
+                delayQueue.schedule(Queues.WEBHOOKS, retry.getMerchantId().toString(), new DeliverWebhookJob(retry.getId(), retry.getCreatedAt()), retry.getAttempts(),
+                        retry.getNextRetryAt().atZone(ZoneId.systemDefault()).toInstant());
+            }
+            scheduled += page.size();
+            if (page.size() < batchSize) break;
+            PendingRetry last = page.get(page.size() - 1);
+            page = webhookLogRepository.findPendingRetriesAfter(last.getNextRetryAt(), last.getId(), PageRequest.of(0, batchSize));
         }
+        if (scheduled > 0) System.out.println("Scheduled " + scheduled + " pending webhook retries from the database");
     }
-}
\ No newline at end of file
+}
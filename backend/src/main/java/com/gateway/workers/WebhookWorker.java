@@ -1,155 +1,195 @@
 package com.gateway.workers;
 
+import com.gateway.config.WebhookRetryProperties;
 import com.gateway.jobs.DeliverWebhookJob;
 import com.gateway.models.Merchant;
 import com.gateway.models.WebhookLog;
+import com.gateway.queue.DelayQueue;
+import com.gateway.queue.Queues;
 import com.gateway.repositories.MerchantRepository;
 import com.gateway.repositories.WebhookLogRepository;
+import com.gateway.webhooks.WebhookCircuitBreakers;
+import com.gateway.webhooks.WebhookDispatcher;
+import com.gateway.webhooks.WebhookLogWriter;
+import com.gateway.webhooks.WebhookSigner;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
-import java.util.concurrent.TimeUnit;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
 
 @Service
+@Profile("worker")
 public class WebhookWorker {
 
-    @Autowired
-    private RedisTemplate<String, Object> redisTemplate;
     @Autowired
     private WebhookLogRepository webhookLogRepository;
     @Autowired
     private MerchantRepository merchantRepository;
+    @Autowired
+    private DelayQueue delayQueue;
+    @Autowired
+    private WebhookDispatcher webhookDispatcher;
+    @Autowired
+    private WebhookLogWriter webhookLogWriter;
+    @Autowired
+    private WebhookCircuitBreakers circuitBreakers;
+    @Autowired
+    private WebhookRetryProperties retryPolicy;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    private final Counter retriesScheduled;
+    private final Counter retriesExhausted;
+    private final Counter deferredByBreaker;
+
+    public WebhookWorker(MeterRegistry meterRegistry) {
+        this.retriesScheduled = Counter.builder("gateway.webhooks.retries")
+                .description("Failed webhook attempts, by whether another attempt was scheduled")
+                .tag("outcome", "scheduled")
+                .register(meterRegistry);
+        this.retriesExhausted = Counter.builder("gateway.webhooks.retries")
+                .tag("outcome", "exhausted")
+                .register(meterRegistry);
+        this.deferredByBreaker = Counter.builder("gateway.webhooks.deferred")
+                .description("Deliveries put back in the delay queue without a request because the merchant's circuit was open")
+                .register(meterRegistry);
+    }
 
-    @Value("${WEBHOOK_RETRY_INTERVALS_TEST:false}")
-    private boolean useTestIntervals;
-
-    private boolean active = true;
-    private final HttpClient httpClient = HttpClient.newHttpClient();
-
-    @Async
-    public void start() {
-        System.out.println("✅ Webhook Worker Started...");
-        while (active) {
-            try {
-                DeliverWebhookJob job = (DeliverWebhookJob) redisTemplate.opsForList().rightPop("queue:webhooks", 5, TimeUnit.SECONDS);
-                if (job != null) {
-                    processWebhook(job);
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+    @Value("${webhooks.delivery.merchant-busy-delay-ms:250}")
+    private long merchantBusyDelayMs;
+
+    @Value("${webhooks.delivery.claim-ms:30000}")
+    private long claimMs;
+
+    // A retry can be on the stream twice: rescheduled from the database at startup after it was promoted, or
+    // promoted again after its claim lease ran out. Only one copy per log runs at a time, claimed before the log is
+    // read; the others are dropped, since the copy that runs schedules the next attempt itself, and a copy that
+    // runs after it reads the log it saved.
+    public CompletableFuture<Void> handle(DeliverWebhookJob job) throws InterruptedException {
+        String claim = "webhooks:delivering:" + job.getWebhookLogId();
+        if (!Boolean.TRUE.equals(stringRedisTemplate.opsForValue().setIfAbsent(claim, "1", Duration.ofMillis(claimMs)))) {
+            return CompletableFuture.completedFuture(null);
         }
+        CompletableFuture<Void> delivery;
+        try {
+            delivery = processWebhook(job);
+        } catch (InterruptedException | RuntimeException e) {
+            stringRedisTemplate.delete(claim);
+            throw e;
+        }
+        return delivery.whenComplete((ignored, error) -> stringRedisTemplate.delete(claim));
     }
 
-    private void processWebhook(DeliverWebhookJob job) {
-        WebhookLog log = webhookLogRepository.findById(job.getWebhookLogId()).orElse(null);
-        if (log == null || "success".equals(log.getStatus()) || "failed".equals(log.getStatus())) return;
+    private CompletableFuture<Void> processWebhook(DeliverWebhookJob job) throws InterruptedException {
+        // Jobs enqueued before they carried createdAt can only be looked up by id, across all partitions
+        WebhookLog log = (job.getCreatedAt() != null
+                ? webhookLogRepository.findByIdAndCreatedAt(job.getWebhookLogId(), job.getCreatedAt())
+                : webhookLogRepository.findById(job.getWebhookLogId())).orElse(null);
+        if (log == null || "success".equals(log.getStatus()) || "failed".equals(log.getStatus())) return CompletableFuture.completedFuture(null);
 
-        // Check if it is time to retry
+        // Check if it is time to retry; an early job goes back to the delay queue instead of being dropped
         if (log.getNextRetryAt() != null && log.getNextRetryAt().isAfter(LocalDateTime.now())) {
-            // Not ready yet, push back to queue (or handling via scheduled task is better, but for simplicity:)
-            // In a real production system, we wouldn't pop it yet. 
-            // For this project, we rely on the RetryScheduler (which we will build next) to push it back.
-            return; 
+            scheduleRetry(log);
+            return CompletableFuture.completedFuture(null);
         }
 
         Merchant merchant = merchantRepository.findById(log.getMerchantId()).orElse(null);
         if (merchant == null || merchant.getWebhookUrl() == null) {
             log.setStatus("failed"); // No URL to send to
-            webhookLogRepository.save(log);
-            return;
+            return webhookLogWriter.save(log);
         }
 
+        // 1. Generate Signature over the exact bytes that will be sent
+        byte[] body = log.getPayload().getBytes(StandardCharsets.UTF_8);
+        String signature;
         try {
-            // 1. Generate Signature
-            String signature = generateHmac(log.getPayload(), merchant.getWebhookSecret());
+            signature = WebhookSigner.sign(body, merchant.getWebhookSecret());
+        } catch (Exception e) {
+            log.setLastAttemptAt(LocalDateTime.now());
+            log.setResponseBody("Error: could not sign payload: " + e.getMessage());
+            handleFailure(log);
+            return persist(log);
+        }
 
-            // 2. Send Request
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(merchant.getWebhookUrl()))
-                    .header("Content-Type", "application/json")
-                    .header("X-Webhook-Signature", signature)
-                    .POST(HttpRequest.BodyPublishers.ofString(log.getPayload()))
-                    .timeout(java.time.Duration.ofSeconds(5))
-                    .build();
+        // The merchant's endpoint is failing: defer without a request and without using up an attempt,
+        // spread out so the deferred deliveries do not all come back at the same moment
+        long deferMs = circuitBreakers.tryAcquire(merchant.getId(), merchant.getWebhookUrl());
+        if (deferMs > 0) {
+            deferredByBreaker.increment();
+            delayQueue.schedule(Queues.WEBHOOKS, merchant.getId().toString(), retryJob(log), log.getAttempts(),
+                    Instant.now().plusMillis(deferMs + ThreadLocalRandom.current().nextLong(deferMs / 2 + 1)));
+            return CompletableFuture.completedFuture(null);
+        }
 
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        // The merchant already has its share of requests in flight: try again shortly, without using up an attempt
+        if (!webhookDispatcher.acquire(merchant.getId())) {
+            circuitBreakers.release(merchant.getId());
+            delayQueue.schedule(Queues.WEBHOOKS, merchant.getId().toString(), retryJob(log), log.getAttempts(),
+                    Instant.now().plusMillis(merchantBusyDelayMs));
+            return CompletableFuture.completedFuture(null);
+        }
 
-            // 3. Handle Response
-            log.setLastAttemptAt(LocalDateTime.now());
-            log.setResponseCode(response.statusCode());
-            log.setResponseBody(response.body());
+        // 2. Send Request, 3. Handle Response once it arrives
+        long started = System.nanoTime();
+        return webhookDispatcher.send(merchant.getId(), merchant.getWebhookUrl(), body, signature)
+                .thenCompose(result -> {
+                    circuitBreakers.record(merchant.getId(), WebhookCircuitBreakers.isFailure(result), System.nanoTime() - started);
+                    log.setLastAttemptAt(LocalDateTime.now());
+                    log.setResponseCode(result.getStatusCode());
+                    log.setResponseBody(result.getBody());
+
+                    if (result.isSuccess()) {
+                        log.setStatus("success");
+                    } else {
+                        handleFailure(log);
+                    }
+                    return persist(log);
+                });
+    }
 
-            if (response.statusCode() >= 200 && response.statusCode() < 300) {
-                log.setStatus("success");
-            } else {
-                handleFailure(log);
+    private CompletableFuture<Void> persist(WebhookLog log) {
+        return webhookLogWriter.save(log).thenRun(() -> {
+            if ("pending".equals(log.getStatus())) {
+                scheduleRetry(log);
             }
-        } catch (Exception e) {
-            log.setResponseBody("Error: " + e.getMessage());
-            handleFailure(log);
-        }
-        
-        webhookLogRepository.save(log);
+        });
+    }
+
+    private void scheduleRetry(WebhookLog log) {
+        delayQueue.schedule(Queues.WEBHOOKS, log.getMerchantId().toString(), retryJob(log), log.getAttempts(),
+                log.getNextRetryAt().atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+    // Built from the log rather than reusing the job that came in (which may predate createdAt), so every
+    // deferral and retry of a log is the same delay queue member as the one RetryScheduler adds
+    private static DeliverWebhookJob retryJob(WebhookLog log) {
+        return new DeliverWebhookJob(log.getId(), log.getCreatedAt());
     }
 
     private void handleFailure(WebhookLog log) {
         int attempts = log.getAttempts() + 1;
         log.setAttempts(attempts);
+        String merchantId = log.getMerchantId().toString();
 
-        if (attempts >= 5) {
+        if (attempts >= retryPolicy.maxAttempts(merchantId)) {
             log.setStatus("failed");
+            retriesExhausted.increment();
         } else {
             log.setStatus("pending");
-            log.setNextRetryAt(LocalDateTime.now().plusSeconds(getRetryDelay(attempts)));
-        }
-    }
-
-    private long getRetryDelay(int attempt) {
-        if (useTestIntervals) {
-            return switch (attempt) {
-                case 1 -> 5;
-                case 2 -> 10;
-                case 3 -> 15;
-                case 4 -> 20;
-                default -> 0;
-            };
-        } else {
-            // Production intervals: 1m, 5m, 30m, 2h
-            return switch (attempt) {
-                case 1 -> 60;
-                case 2 -> 300;
-                case 3 -> 1800;
-                case 4 -> 7200;
-                default -> 0;
-            };
-        }
-    }
-
-    private String generateHmac(String data, String secret) throws Exception {
-        Mac sha256_HMAC = Mac.getInstance("HmacSHA256");
-        SecretKeySpec secret_key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
-        sha256_HMAC.init(secret_key);
-        byte[] rawHmac = sha256_HMAC.doFinal(data.getBytes(StandardCharsets.UTF_8));
-        
-        // Convert to Hex
-        StringBuilder hexString = new StringBuilder();
-        for (byte b : rawHmac) {
-            String hex = Integer.toHexString(0xff & b);
-            if (hex.length() == 1) hexString.append('0');
-            hexString.append(hex);
+            retriesScheduled.increment();
+            log.setNextRetryAt(LocalDateTime.now().plus(retryPolicy.delayMs(merchantId, attempts), ChronoUnit.MILLIS));
         }
-        return hexString.toString();
     }
-}
\ No newline at end of file
+}
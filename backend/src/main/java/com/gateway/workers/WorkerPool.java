@@ -0,0 +1,405 @@
+package com.gateway.workers;
+
+import com.gateway.config.FairnessProperties;
+import com.gateway.queue.JobQueue;
+import com.gateway.queue.QueuedJob;
+import com.gateway.queue.Queues;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drains one job queue across all of its merchant partitions.
+ *
+ * A scheduler thread picks which partition to read next by deficit round robin: every round each partition with
+ * jobs earns {@code quantum × weight} credits and may start that many jobs, limited by its in-flight cap and by
+ * the pool's free worker threads. Jobs are only read from Redis when a thread is free to take them, so a merchant
+ * with a large backlog cannot crowd out the others; its jobs wait in its own stream.
+ *
+ * Handlers may finish asynchronously; a job is acked only once its future completes successfully,
+ * so jobs of a crashed or failing worker are picked up again by the reclaimer. Reclaimed jobs are handed to the
+ * scheduler and started like polled ones, within the same threads, caps and credits.
+ */
+public class WorkerPool<T> {
+
+    @FunctionalInterface
+    public interface JobHandler<T> {
+        CompletionStage<?> handle(T job) throws Exception;
+    }
+
+    // Scheduler thread state, except inFlight which completions update and stalled which the reclaimer fills
+    private static final class Partition {
+        final String id; // merchant id, null for the queue's shared stream
+        final String stream;
+        final int weight;
+        final int maxInFlight;
+        final AtomicInteger inFlight = new AtomicInteger();
+        final ConcurrentLinkedQueue<QueuedJob> stalled = new ConcurrentLinkedQueue<>(); // reclaimed, not started yet
+        int deficit;
+        long lastEnqueuedAt;
+        boolean drained; // came up empty; skipped until the registry shows a newer job
+
+        Partition(String id, String stream, int weight, int maxInFlight) {
+            this.id = id;
+            this.stream = stream;
+            this.weight = weight;
+            this.maxInFlight = maxInFlight;
+        }
+    }
+
+    private final String name;
+    private final String queue;
+    private final String consumer;
+    private final int concurrency;
+    private final int maxInFlight;
+    private final int batchSize;
+    private final Duration reclaimIdle;
+    private final JobHandler<T> handler;
+    private final JobQueue jobQueue;
+    private final FairnessProperties fairness;
+    private final ExecutorService executor;
+    private final Thread scheduler;
+    private final ScheduledExecutorService reclaimer;
+
+    // One permit per worker thread; the scheduler reads a job only after taking a permit for it. A permit is held
+    // while the handler is called, which for an async handler ends when it returns its future: slots bound how many
+    // jobs are being dispatched, not how many are in flight. In-flight jobs are bounded by the handler itself
+    // (maxInFlight) and per partition by the fairness caps.
+    private final Semaphore slots;
+    private final Map<String, Partition> partitions = new ConcurrentHashMap<>();
+    private List<Partition> rotation = List.of();
+    private int nextStart;
+
+    private final AtomicInteger busy = new AtomicInteger(); // Threads inside handler.handle
+    private final AtomicInteger inFlight = new AtomicInteger(); // Dispatched jobs whose future has not completed
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong reclaimed = new AtomicLong();
+    private volatile boolean active = true;
+
+    // Registered once so recording a job allocates nothing
+    private final Timer waitTimer;
+    private final Timer succeededTimer;
+    private final Timer failedTimer;
+
+    /**
+     * @param maxInFlight how many jobs the handler takes on at once before it blocks; utilization is measured against it
+     */
+    public WorkerPool(String name, String queue, String workerId, int concurrency, int maxInFlight, int batchSize, Duration reclaimIdle,
+                      JobHandler<T> handler, JobQueue jobQueue, FairnessProperties fairness, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.queue = queue;
+        this.consumer = workerId + "-" + name;
+        this.concurrency = concurrency;
+        this.maxInFlight = maxInFlight;
+        this.batchSize = batchSize;
+        this.reclaimIdle = reclaimIdle;
+        this.handler = handler;
+        this.jobQueue = jobQueue;
+        this.fairness = fairness;
+        this.slots = new Semaphore(concurrency);
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(concurrency, concurrency, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), r -> new Thread(r, name + "-worker-" + threadIndex.incrementAndGet()));
+        this.scheduler = new Thread(this::schedule, name + "-scheduler");
+        this.reclaimer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, name + "-reclaimer");
+            t.setDaemon(true);
+            return t;
+        });
+        Partition shared = new Partition(null, queue, fairness.weight(null), fairness.maxInFlight(null));
+        partitions.put(queue, shared);
+
+        this.waitTimer = Timer.builder("gateway.queue.wait")
+                .description("Time from enqueue (or retry due time) until a worker picks the job up")
+                .tag("queue", queue)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.succeededTimer = jobTimer(meterRegistry, "success");
+        this.failedTimer = jobTimer(meterRegistry, "failure");
+        Gauge.builder("gateway.worker.in_flight", inFlight, AtomicInteger::get).tag("queue", queue).register(meterRegistry);
+        Gauge.builder("gateway.worker.utilization", this, WorkerPool::getUtilization)
+                .description("Jobs in flight as a share of what the handler takes on at once")
+                .tag("queue", queue)
+                .register(meterRegistry);
+        Gauge.builder("gateway.worker.partitions", partitions, Map::size)
+                .description("Partitions (merchants plus the shared stream) this pool is scheduling")
+                .tag("queue", queue)
+                .register(meterRegistry);
+    }
+
+    private Timer jobTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder("gateway.jobs.duration")
+                .description("Time from dispatch until the job's handler completes")
+                .tags("queue", queue, "outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    public void start(long reclaimIntervalMs) {
+        scheduler.start();
+        reclaimer.scheduleWithFixedDelay(this::reclaimStalled, reclaimIntervalMs, reclaimIntervalMs, TimeUnit.MILLISECONDS);
+        System.out.println("✅ " + name + " pool started with " + concurrency + " workers on " + queue);
+    }
+
+    private void schedule() {
+        long nextRefresh = 0;
+        while (active) {
+            try {
+                if (System.currentTimeMillis() >= nextRefresh) {
+                    refreshPartitions();
+                    nextRefresh = System.currentTimeMillis() + fairness.getPartitionRefreshMs();
+                }
+                if (runRound() == 0) {
+                    Thread.sleep(fairness.getIdleSleepMs());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                if (active) {
+                    e.printStackTrace();
+                    pause();
+                }
+            }
+        }
+    }
+
+    // Picks up merchants that got jobs since the last refresh and forgets the ones retired elsewhere
+    private void refreshPartitions() {
+        Map<String, Long> registered = jobQueue.partitions(queue);
+        for (Map.Entry<String, Long> entry : registered.entrySet()) {
+            String id = entry.getKey();
+            Partition partition = partitions.computeIfAbsent(Queues.stream(queue, id),
+                    stream -> new Partition(id, stream, fairness.weight(id), fairness.maxInFlight(id)));
+            if (entry.getValue() > partition.lastEnqueuedAt) partition.drained = false;
+            partition.lastEnqueuedAt = entry.getValue();
+        }
+        partitions.values().removeIf(p -> p.id != null && !registered.containsKey(p.id) && p.inFlight.get() == 0 && p.stalled.isEmpty());
+        rotation = new ArrayList<>(partitions.values());
+    }
+
+    /**
+     * One deficit round robin pass over the partitions, starting one further along each time.
+     *
+     * @return how many jobs were started
+     */
+    private int runRound() throws InterruptedException {
+        List<Partition> round = rotation;
+        if (round.isEmpty()) return 0;
+        int start = nextStart++ % round.size();
+        int started = 0;
+        boolean retired = false;
+
+        for (int i = 0; i < round.size() && active; i++) {
+            Partition partition = round.get((start + i) % round.size());
+            if (partition.drained && partition.stalled.isEmpty()) continue;
+            int room = partition.maxInFlight - partition.inFlight.get();
+            if (room <= 0) continue; // At its cap; earns nothing until a job finishes
+
+            // Unspent credit carries over (up to one extra round) when the cap or busy threads cut a turn short
+            int share = fairness.getQuantum() * partition.weight;
+            partition.deficit = Math.min(partition.deficit + share, 2 * share);
+            int wanted = Math.min(Math.min(partition.deficit, room), batchSize);
+
+            int granted = acquireSlots(wanted);
+            if (granted == 0) break;
+            // Reclaimed jobs first: they have waited the longest
+            List<QueuedJob> jobs = new ArrayList<>(granted);
+            QueuedJob stalled;
+            while (jobs.size() < granted && (stalled = partition.stalled.poll()) != null) jobs.add(stalled);
+            int fromStream = granted - jobs.size();
+            boolean streamEmpty = false;
+            if (fromStream > 0) {
+                try {
+                    List<QueuedJob> polled = jobQueue.poll(partition.stream, consumer, fromStream, null);
+                    streamEmpty = polled.size() < fromStream;
+                    jobs.addAll(polled);
+                } catch (Exception e) {
+                    partition.stalled.addAll(jobs);
+                    slots.release(granted);
+                    if (active) System.err.println("Failed to poll " + partition.stream + ": " + e.getMessage());
+                    continue;
+                }
+            }
+            slots.release(granted - jobs.size());
+
+            if (streamEmpty) {
+                // Nothing more queued: an idle partition keeps no credit
+                partition.deficit = 0;
+                if (partition.id != null) partition.drained = true;
+                if (jobs.isEmpty()) retired |= retireIfIdle(partition);
+            } else {
+                partition.deficit -= jobs.size();
+            }
+            for (QueuedJob job : jobs) {
+                submit(partition, job);
+            }
+            started += jobs.size();
+        }
+        if (retired) rotation = new ArrayList<>(partitions.values());
+        return started;
+    }
+
+    // Blocks for the first free thread, then takes as many more as are free, up to wanted; 0 once stopping
+    private int acquireSlots(int wanted) throws InterruptedException {
+        while (!slots.tryAcquire(200, TimeUnit.MILLISECONDS)) {
+            if (!active) return 0;
+        }
+        int granted = 1;
+        while (granted < wanted && slots.tryAcquire()) granted++;
+        return granted;
+    }
+
+    private boolean retireIfIdle(Partition partition) {
+        if (partition.id == null || partition.inFlight.get() > 0 || !partition.stalled.isEmpty()) return false;
+        if (System.currentTimeMillis() - partition.lastEnqueuedAt < fairness.getPartitionIdleMs()) return false;
+        try {
+            if (!jobQueue.retire(queue, partition.id, partition.lastEnqueuedAt)) return false;
+        } catch (Exception e) {
+            System.err.println("Failed to retire " + partition.stream + ": " + e.getMessage());
+            return false;
+        }
+        partitions.remove(partition.stream);
+        return true;
+    }
+
+    private void submit(Partition partition, QueuedJob job) {
+        partition.inFlight.incrementAndGet();
+        executor.execute(() -> {
+            try {
+                dispatch(partition, job);
+            } finally {
+                slots.release();
+            }
+        });
+    }
+
+    // Takes over jobs left pending too long and queues them on their partition for the scheduler to start. A
+    // partition whose last reclaimed jobs have not started yet is skipped, so they do not go stale here in turn.
+    private void reclaimStalled() {
+        for (Partition partition : partitions.values()) {
+            if (!active) return; // Left pending; another worker will reclaim them
+            if (!partition.stalled.isEmpty()) continue;
+            try {
+                List<QueuedJob> stalled = jobQueue.reclaim(partition.stream, consumer + "-reclaimer", reclaimIdle, batchSize);
+                for (QueuedJob job : stalled) {
+                    System.out.println("♻️ Reclaimed stalled job " + job.getId() + " on " + partition.stream);
+                }
+                reclaimed.addAndGet(stalled.size());
+                partition.stalled.addAll(stalled);
+            } catch (Exception e) {
+                if (active) e.printStackTrace();
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void dispatch(Partition partition, QueuedJob queued) {
+        long started = System.nanoTime();
+        if (queued.getEnqueuedAt() > 0) {
+            waitTimer.record(Math.max(0, System.currentTimeMillis() - queued.getEnqueuedAt()), TimeUnit.MILLISECONDS);
+        }
+
+        busy.incrementAndGet();
+        inFlight.incrementAndGet();
+        try {
+            handler.handle((T) queued.getJob()).whenComplete((ignored, error) -> {
+                inFlight.decrementAndGet();
+                partition.inFlight.decrementAndGet();
+                if (error == null) {
+                    jobQueue.ack(partition.stream, queued.getId());
+                    processed.incrementAndGet();
+                    succeededTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                } else {
+                    failed.incrementAndGet();
+                    failedTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                    error.printStackTrace();
+                }
+            });
+        } catch (Exception e) {
+            // Left un-acked on purpose: the reclaimer retries it after the idle timeout
+            inFlight.decrementAndGet();
+            partition.inFlight.decrementAndGet();
+            failed.incrementAndGet();
+            failedTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            e.printStackTrace();
+        } finally {
+            busy.decrementAndGet();
+        }
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stops scheduling and waits for in-flight jobs to finish.
+     */
+    public void stop(long timeoutSeconds) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+        active = false;
+        reclaimer.shutdownNow();
+        scheduler.join(TimeUnit.SECONDS.toMillis(timeoutSeconds));
+        executor.shutdown();
+        if (!executor.awaitTermination(timeoutSeconds, TimeUnit.SECONDS)) {
+            System.err.println("⚠️ " + name + " pool did not drain in " + timeoutSeconds + "s, interrupting");
+            executor.shutdownNow();
+        }
+        // Async jobs outlive the consumer threads, give them the rest of the budget
+        while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(100);
+        }
+        if (inFlight.get() > 0) {
+            System.err.println("⚠️ " + name + " pool stopped with " + inFlight.get() + " jobs still in flight");
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    // Against the handler's in-flight limit, not the threads: with async handlers a thread is busy only while it
+    // starts a job, so busy / concurrency stays near zero however loaded the pool is
+    public double getUtilization() {
+        return (double) inFlight.get() / maxInFlight;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("queue", queue);
+        stats.put("concurrency", concurrency);
+        stats.put("partitions", partitions.size());
+        stats.put("busy", busy.get());
+        stats.put("in_flight", inFlight.get());
+        stats.put("max_in_flight", maxInFlight);
+        stats.put("utilization", getUtilization());
+        stats.put("processed", processed.get());
+        stats.put("failed", failed.get());
+        stats.put("reclaimed", reclaimed.get());
+        return stats;
+    }
+}
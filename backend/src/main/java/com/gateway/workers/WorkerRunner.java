@@ -1,23 +1,118 @@
 package com.gateway.workers;
 
+import com.gateway.config.FairnessProperties;
+import com.gateway.jobs.DeliverWebhookJob;
+import com.gateway.jobs.ProcessPaymentJob;
+import com.gateway.jobs.ProcessRefundJob;
+import com.gateway.queue.JobQueue;
+import com.gateway.queue.Queues;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.context.annotation.Profile;
+import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
 @Component
 @Profile("worker") // This ensures it ONLY runs in the worker container
-public class WorkerRunner implements CommandLineRunner {
+public class WorkerRunner implements CommandLineRunner, DisposableBean {
 
     @Autowired private PaymentWorker paymentWorker;
     @Autowired private RefundWorker refundWorker;
     @Autowired private WebhookWorker webhookWorker;
+    @Autowired private JobQueue jobQueue;
+    @Autowired private RedisTemplate<String, Object> redisTemplate;
+    @Autowired private MeterRegistry meterRegistry;
+    @Autowired private FairnessProperties fairness;
+
+    @Value("${worker.payments.concurrency:16}")
+    private int paymentConcurrency;
+
+    @Value("${worker.refunds.concurrency:4}")
+    private int refundConcurrency;
+
+    @Value("${worker.webhooks.concurrency:16}")
+    private int webhookConcurrency;
+
+    // The handlers' own in-flight limits, which the pools report utilization against
+    @Value("${worker.payments.max-in-flight:10000}")
+    private int paymentMaxInFlight;
+
+    @Value("${worker.refunds.max-in-flight:2000}")
+    private int refundMaxInFlight;
+
+    @Value("${webhooks.delivery.max-in-flight:2000}")
+    private int webhookMaxInFlight;
+
+    @Value("${worker.batch-size:32}")
+    private int batchSize;
+
+    @Value("${worker.reclaim.min-idle-ms:60000}")
+    private long reclaimMinIdleMs;
+
+    @Value("${worker.reclaim.interval-ms:15000}")
+    private long reclaimIntervalMs;
+
+    @Value("${worker.shutdown-timeout-seconds:30}")
+    private long shutdownTimeoutSeconds;
+
+    private final List<WorkerPool<?>> pools = new ArrayList<>();
 
     @Override
     public void run(String... args) throws Exception {
         System.out.println("🚀 Starting Background Workers...");
-        paymentWorker.start();
-        refundWorker.start();
-        webhookWorker.start();
+        moveLegacyListJobs("queue:payments", Queues.PAYMENTS);
+        moveLegacyListJobs("queue:refunds", Queues.REFUNDS);
+        moveLegacyListJobs("queue:webhooks", Queues.WEBHOOKS);
+
+        String workerId = workerId();
+        Duration reclaimIdle = Duration.ofMillis(reclaimMinIdleMs);
+        pools.add(new WorkerPool<ProcessPaymentJob>("payments", Queues.PAYMENTS, workerId, paymentConcurrency, paymentMaxInFlight, batchSize, reclaimIdle, paymentWorker::handle, jobQueue, fairness, meterRegistry));
+        pools.add(new WorkerPool<ProcessRefundJob>("refunds", Queues.REFUNDS, workerId, refundConcurrency, refundMaxInFlight, batchSize, reclaimIdle, refundWorker::handle, jobQueue, fairness, meterRegistry));
+        pools.add(new WorkerPool<DeliverWebhookJob>("webhooks", Queues.WEBHOOKS, workerId, webhookConcurrency, webhookMaxInFlight, batchSize, reclaimIdle, webhookWorker::handle, jobQueue, fairness, meterRegistry));
+        pools.forEach(pool -> pool.start(reclaimIntervalMs));
+    }
+
+    // Jobs left in the pre-stream Redis lists by an older deployment; they carry no merchant, so they go to the shared stream
+    private void moveLegacyListJobs(String listKey, String queue) {
+        int moved = 0;
+        Object job;
+        while ((job = redisTemplate.opsForList().rightPop(listKey)) != null) {
+            jobQueue.enqueue(queue, null, job);
+            moved++;
+        }
+        if (moved > 0) System.out.println("Moved " + moved + " jobs from " + listKey + " to " + queue);
+    }
+
+    // Consumer names must be unique per JVM so a restarted worker's stalled jobs get reclaimed rather than reused
+    private static String workerId() {
+        String host = System.getenv("HOSTNAME");
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+        return (host != null && !host.isBlank() ? host : "worker") + "-" + suffix;
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        System.out.println("🛑 Stopping Background Workers...");
+        for (WorkerPool<?> pool : pools) {
+            pool.stop(shutdownTimeoutSeconds);
+        }
+    }
+
+    public Map<String, Object> poolStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        for (WorkerPool<?> pool : pools) {
+            stats.put(pool.getName(), pool.stats());
+        }
+        return stats;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,12 @@
+-- Indexes for the queries the gateway runs outside primary-key lookups.
+
+-- RetryScheduler rebuilds the delay queue from pending logs with a retry time set (findByStatusAndNextRetryAtIsNotNull).
+-- Partial: delivered and failed logs, almost all of the table, are left out of the index.
+CREATE INDEX IF NOT EXISTS idx_webhook_logs_pending_retry ON webhook_logs (next_retry_at) WHERE status = 'pending';
+
+-- PaymentStatusCounters recounts payments per status (GROUP BY status); answered by an index-only scan
+CREATE INDEX IF NOT EXISTS idx_payments_status ON payments (status);
+
+-- Refunds of a payment, and the foreign key check on payments
+CREATE INDEX IF NOT EXISTS idx_refunds_payment_id ON refunds (payment_id);
+
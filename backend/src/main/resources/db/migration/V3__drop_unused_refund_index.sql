@@ -0,0 +1,9 @@
+-- Corrections to V2, which is left as applied (editing it would change its checksum).
+
+-- idx_refunds_payment_id serves no query: refunds are no longer looked up by payment, and the foreign key it backed
+-- is only checked from the payments side when a payment is deleted or changes id, which the gateway never does.
+-- Dropped so every refund insert stops maintaining it.
+DROP INDEX IF EXISTS idx_refunds_payment_id;
+
+-- idx_webhook_logs_pending_retry stays: the query V2 names for it (findByStatusAndNextRetryAtIsNotNull) is now
+-- WebhookLogRepository.findPendingRetries and findPendingRetriesAfter, which walk it the same way.
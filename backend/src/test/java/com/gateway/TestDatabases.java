@@ -0,0 +1,56 @@
+package com.gateway;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.flywaydb.core.Flyway;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * One Postgres process (real binaries from the test classpath, same major version as docker-compose.yml) shared by
+ * every test in the JVM. Each test class gets a database of its own, migrated from db/migration like production.
+ */
+public final class TestDatabases {
+
+    public static final String USER = "postgres";
+    public static final String PASSWORD = "postgres";
+
+    private static EmbeddedPostgres postgres;
+
+    private TestDatabases() {}
+
+    /**
+     * @return the JDBC URL of a new, fully migrated database (dropped first if it exists)
+     */
+    public static synchronized String create(String name) {
+        try {
+            if (postgres == null) {
+                postgres = EmbeddedPostgres.builder().start();
+                Runtime.getRuntime().addShutdownHook(new Thread(TestDatabases::stop, "embedded-postgres-stop"));
+            }
+            try (Connection connection = postgres.getPostgresDatabase().getConnection();
+                 Statement statement = connection.createStatement()) {
+                statement.execute("DROP DATABASE IF EXISTS " + name);
+                statement.execute("CREATE DATABASE " + name);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not create test database " + name, e);
+        }
+        String url = postgres.getJdbcUrl(USER, name);
+        Flyway.configure().dataSource(url, USER, PASSWORD).load().migrate();
+        return url;
+    }
+
+    private static synchronized void stop() {
+        try {
+            postgres.close();
+        } catch (IOException e) {
+            System.err.println("Failed to stop embedded Postgres: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.gateway.repositories;
+
+import com.gateway.TestDatabases;
+import com.gateway.models.Merchant;
+import com.gateway.models.Payment;
+import com.gateway.models.Refund;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * JDBC statements per persistence operation on the hot paths, counted by Hibernate statistics against a migrated
+ * database with the application's JPA settings (batching, L2 cache). An extra SELECT before an insert, a merchant
+ * loaded with its payment or a merge instead of a single UPDATE shows up here as a changed count.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // Commit like the application does, not roll back per test
+class PersistenceStatementsTest {
+
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) {
+        String url = TestDatabases.create("persistence_statements");
+        registry.add("spring.datasource.url", () -> url);
+        registry.add("spring.datasource.username", () -> TestDatabases.USER);
+        registry.add("spring.datasource.password", () -> TestDatabases.PASSWORD);
+    }
+
+    @Autowired private PaymentRepository paymentRepository;
+    @Autowired private RefundRepository refundRepository;
+    @Autowired private MerchantRepository merchantRepository;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+    @Autowired private PlatformTransactionManager transactionManager;
+
+    private Statistics statistics;
+    private TransactionTemplate transactionTemplate;
+    private Merchant merchant;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        merchant = merchantRepository.findByApiKey("key_test_abc123").orElseThrow();
+    }
+
+    // PaymentController.createPayment
+    @Test
+    void newPaymentIsOneInsert() {
+        Payment payment = newPayment();
+        assertThat(statements(() -> paymentRepository.save(payment))).isEqualTo(1);
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(1);
+    }
+
+    // PaymentController batch creation: JDBC batches of hibernate.jdbc.batch_size reuse one prepared INSERT;
+    // unbatched, each payment would prepare its own
+    @Test
+    void batchOfPaymentsIsInsertedInJdbcBatches() {
+        List<Payment> payments = new ArrayList<>();
+        for (int i = 0; i < 250; i++) payments.add(newPayment());
+        assertThat(statements(() -> paymentRepository.saveAll(payments))).isEqualTo(1);
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(250);
+    }
+
+    // PaymentWorker.processPayment and the payment reads: the merchant stays an unloaded proxy
+    @Test
+    void findPaymentDoesNotLoadMerchant() {
+        Payment saved = paymentRepository.save(newPayment());
+        Payment[] found = new Payment[1];
+        assertThat(statements(() -> found[0] = paymentRepository.findById(saved.getId()).orElseThrow())).isEqualTo(1);
+        assertThat(found[0].getMerchant().getId()).isEqualTo(merchant.getId());
+        assertThat(Hibernate.isInitialized(found[0].getMerchant())).isFalse();
+    }
+
+    // PaymentWorker.completePayment; a second delivery of the same job changes nothing
+    @Test
+    void settleIsOneUpdate() {
+        Payment saved = paymentRepository.save(newPayment());
+        assertThat(statements(() -> inTransaction(() ->
+                paymentRepository.settle(saved.getId(), "success", null, null, LocalDateTime.now())))).isEqualTo(1);
+        assertThat(inTransaction(() -> paymentRepository.settle(saved.getId(), "failed", "X", "X", LocalDateTime.now()))).isZero();
+    }
+
+    // PaymentController.capturePayment: loaded and changed in one transaction, flushed as one UPDATE
+    @Test
+    void captureIsOneSelectAndOneUpdate() {
+        Payment saved = paymentRepository.save(newPayment());
+        inTransaction(() -> paymentRepository.settle(saved.getId(), "success", null, null, LocalDateTime.now()));
+        assertThat(statements(() -> inTransaction(() -> {
+            Payment payment = paymentRepository.findById(saved.getId()).orElseThrow();
+            payment.setCaptured(true);
+            payment.setUpdatedAt(LocalDateTime.now());
+            return payment;
+        }))).isEqualTo(2);
+        assertThat(statistics.getEntityUpdateCount()).isEqualTo(1);
+        assertThat(paymentRepository.findById(saved.getId()).orElseThrow().getCaptured()).isTrue();
+    }
+
+    // RefundController.createRefund and RefundWorker.completeRefund
+    @Test
+    void refundIsOneUpdateOneInsertAndOneUpdate() {
+        Payment saved = paymentRepository.save(newPayment());
+        inTransaction(() -> paymentRepository.settle(saved.getId(), "success", null, null, LocalDateTime.now()));
+
+        assertThat(statements(() -> inTransaction(() -> paymentRepository.addRefundedAmount(saved.getId(), 1000)))).isEqualTo(1);
+
+        Refund refund = new Refund();
+        refund.setId("rfnd_stmt_" + SEQUENCE.incrementAndGet());
+        refund.setPaymentId(saved.getId());
+        refund.setMerchantId(merchant.getId());
+        refund.setAmount(1000);
+        refund.setStatus("pending");
+        assertThat(statements(() -> refundRepository.save(refund))).isEqualTo(1);
+
+        assertThat(statements(() -> inTransaction(() -> refundRepository.markProcessed(refund.getId(), LocalDateTime.now())))).isEqualTo(1);
+    }
+
+    // WebhookWorker and the merchant lookups: after the first load, merchants come from the second-level cache
+    @Test
+    void merchantIsServedFromSecondLevelCache() {
+        entityManagerFactory.getCache().evictAll();
+        assertThat(statements(() -> merchantRepository.findById(merchant.getId()))).isEqualTo(1);
+        assertThat(statements(() -> merchantRepository.findById(merchant.getId()))).isZero();
+        assertThat(statistics.getSecondLevelCacheHitCount()).isEqualTo(1);
+    }
+
+    private long statements(Runnable operation) {
+        statistics.clear();
+        operation.run();
+        return statistics.getPrepareStatementCount();
+    }
+
+    private <T> T inTransaction(Supplier<T> operation) {
+        return transactionTemplate.execute(status -> operation.get());
+    }
+
+    private Payment newPayment() {
+        Payment payment = new Payment();
+        payment.setId("pay_stmt_" + SEQUENCE.incrementAndGet());
+        payment.setMerchant(merchant);
+        payment.setOrderId("order_" + SEQUENCE.get());
+        payment.setAmount(50000);
+        payment.setCurrency("INR");
+        payment.setMethod("upi");
+        payment.setStatus("pending");
+        payment.setCaptured(false);
+        return payment;
+    }
+}
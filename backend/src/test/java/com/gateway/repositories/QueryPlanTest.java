@@ -0,0 +1,243 @@
+package com.gateway.repositories;
+
+import com.gateway.TestDatabases;
+import com.gateway.webhooks.WebhookLogWriter;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Plans of the queries the gateway runs outside primary-key lookups, against a migrated database seeded with
+ * production-like volumes: none may fall back to a sequential scan, and lookups by a log's key read one partition.
+ * Each test calls the repository method the application calls and EXPLAINs the SQL Hibernate sent for it, with the
+ * same values bound, so a dropped index, or a query that changes and stops matching one, fails here. Only the plan's
+ * shape is checked, not how long it took.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.gateway.repositories.QueryPlanTest$CapturedSql")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class QueryPlanTest {
+
+    private static final int MERCHANTS = 500;
+    private static final int PAYMENTS = 100_000;
+    private static final int REFUNDS = 10_000;
+    private static final int WEBHOOK_LOGS = 200_000;
+    private static final int DAYS = 14;
+
+    private static final Pattern EMPTY_RELATION_SCAN = Pattern.compile("Seq Scan on \\S+ \\S+ {2}\\(cost=0\\.00\\.\\.0\\.00 ");
+    private static final Pattern WEBHOOK_LOG_PARTITION = Pattern.compile(" on (webhook_logs_\\w+)");
+
+    private static final String URL = TestDatabases.create("query_plans");
+
+    private static Connection connection;
+    private static UUID merchantId;
+
+    /**
+     * Records the SQL of every statement Hibernate prepares, as it sends it.
+     */
+    public static class CapturedSql implements StatementInspector {
+        private static final List<String> statements = new ArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            synchronized (statements) {
+                statements.add(sql);
+            }
+            return sql;
+        }
+
+        // The one statement the operation ran
+        static String of(Runnable operation) {
+            synchronized (statements) {
+                statements.clear();
+            }
+            operation.run();
+            synchronized (statements) {
+                assertThat(statements).as("statements run").hasSize(1);
+                return statements.get(0);
+            }
+        }
+    }
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> URL);
+        registry.add("spring.datasource.username", () -> TestDatabases.USER);
+        registry.add("spring.datasource.password", () -> TestDatabases.PASSWORD);
+    }
+
+    @Autowired private WebhookLogRepository webhookLogRepository;
+
+    @BeforeAll
+    static void seed() throws SQLException {
+        connection = DriverManager.getConnection(URL, TestDatabases.USER, TestDatabases.PASSWORD);
+        try (Statement statement = connection.createStatement()) {
+            // Daily partitions as WebhookLogRetention creates them, so plans cover the partitioned layout
+            LocalDate today = LocalDate.now();
+            for (int i = -DAYS; i <= 1; i++) {
+                LocalDate day = today.plusDays(i);
+                statement.execute("CREATE TABLE webhook_logs_p" + day.format(DateTimeFormatter.BASIC_ISO_DATE)
+                        + " PARTITION OF webhook_logs FOR VALUES FROM ('" + day + "') TO ('" + day.plusDays(1) + "')");
+            }
+
+            statement.execute("""
+                    INSERT INTO merchants (email, name, api_key, api_secret, webhook_secret)
+                    SELECT 'm' || n || '@example.com', 'Merchant ' || n, 'key_' || n, 'secret_' || n, 'whsec_' || n
+                    FROM generate_series(1, %d) n""".formatted(MERCHANTS));
+            statement.execute("CREATE TEMP TABLE merchant_ids AS SELECT row_number() OVER () AS k, id FROM merchants");
+
+            // 90% success, 7% failed, 3% pending
+            statement.execute("""
+                    INSERT INTO payments (id, merchant_id, order_id, amount, currency, method, status, created_at)
+                    SELECT 'pay_' || n, m.id, 'order_' || n, 50000, 'INR', 'upi',
+                           CASE WHEN n %% 100 < 90 THEN 'success' WHEN n %% 100 < 97 THEN 'failed' ELSE 'pending' END,
+                           now() - (n %% %d) * interval '1 day'
+                    FROM generate_series(1, %d) n JOIN merchant_ids m ON m.k = 1 + n %% %d""".formatted(DAYS, PAYMENTS, MERCHANTS + 1));
+            statement.execute("""
+                    INSERT INTO refunds (id, payment_id, merchant_id, amount, status)
+                    SELECT 'rfnd_' || n, 'pay_' || (n * 9), p.merchant_id, 1000, 'processed'
+                    FROM generate_series(1, %d) n JOIN payments p ON p.id = 'pay_' || (n * 9)""".formatted(REFUNDS));
+
+            // Mostly delivered; 1% waiting for a retry after failed attempts, 1% first attempts not made yet
+            statement.execute("""
+                    INSERT INTO webhook_logs (merchant_id, event, payload, status, attempts, next_retry_at, response_code, created_at)
+                    SELECT m.id, 'payment.success', '{"event":"payment.success"}',
+                           CASE WHEN n %% 100 < 98 THEN 'success' ELSE 'pending' END,
+                           CASE WHEN n %% 100 = 98 THEN 1 + n %% 4 WHEN n %% 100 = 99 THEN 0 ELSE 1 END,
+                           CASE WHEN n %% 100 >= 98 THEN now() + (n %% 7200) * interval '1 second' END,
+                           CASE WHEN n %% 100 < 98 THEN 200 END,
+                           now() - (n %% %d) * interval '1 day' - (n %% 86400) * interval '1 second'
+                    FROM generate_series(1, %d) n JOIN merchant_ids m ON m.k = 1 + n %% %d""".formatted(DAYS, WEBHOOK_LOGS, MERCHANTS + 1));
+
+            statement.execute("VACUUM ANALYZE");
+        }
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT id FROM merchants WHERE api_key = 'key_test_abc123'")) {
+            rs.next();
+            merchantId = rs.getObject(1, UUID.class);
+        }
+    }
+
+    @AfterAll
+    static void close() throws SQLException {
+        connection.close();
+    }
+
+    // WebhookController: first page of the dashboard's log list, with and without filters
+    @Test
+    void webhookLogFirstPage() throws SQLException {
+        PageRequest page = PageRequest.of(0, 50);
+        assertIndexed(CapturedSql.of(() -> webhookLogRepository.findPage(merchantId, null, null, page)),
+                merchantId, null, null, null, null, 0, 50);
+        assertIndexed(CapturedSql.of(() -> webhookLogRepository.findPage(merchantId, "pending", "payment.success", page)),
+                merchantId, "pending", "pending", "payment.success", "payment.success", 0, 50);
+    }
+
+    // WebhookController: the next page, from a cursor in the middle of the merchant's logs
+    @Test
+    void webhookLogNextPage() throws SQLException {
+        Timestamp createdAt;
+        UUID id;
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT created_at, id FROM webhook_logs WHERE merchant_id = ? ORDER BY created_at DESC, id DESC OFFSET 200 LIMIT 1")) {
+            statement.setObject(1, merchantId);
+            try (ResultSet rs = statement.executeQuery()) {
+                rs.next();
+                createdAt = rs.getTimestamp(1);
+                id = rs.getObject(2, UUID.class);
+            }
+        }
+        String sql = CapturedSql.of(() -> webhookLogRepository.findPageAfter(merchantId, createdAt.toLocalDateTime(), id, null, null, PageRequest.of(0, 50)));
+        assertIndexed(sql, merchantId, createdAt, createdAt, id, null, null, null, null, 0, 50);
+    }
+
+    // RetryScheduler.schedulePendingRetries on worker start: the first page, then keyset pages after it
+    @Test
+    void pendingRetries() throws SQLException {
+        assertIndexed(CapturedSql.of(() -> webhookLogRepository.findPendingRetries(PageRequest.of(0, 500))), 0, 500);
+
+        LocalDateTime cursor = LocalDateTime.now().plusHours(1);
+        UUID after = new UUID(0, 0);
+        String sql = CapturedSql.of(() -> webhookLogRepository.findPendingRetriesAfter(cursor, after, PageRequest.of(0, 500)));
+        Timestamp nextRetryAt = Timestamp.valueOf(cursor);
+        assertIndexed(sql, nextRetryAt, nextRetryAt, after, 0, 500);
+    }
+
+    // WebhookWorker's lookup and WebhookLogWriter's update: only the log's own partition is read
+    @Test
+    void webhookLogByKey() throws SQLException {
+        Timestamp createdAt;
+        UUID id;
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT created_at, id FROM webhook_logs WHERE status = 'pending' LIMIT 1")) {
+            rs.next();
+            createdAt = rs.getTimestamp(1);
+            id = rs.getObject(2, UUID.class);
+        }
+        String sql = CapturedSql.of(() -> webhookLogRepository.findByIdAndCreatedAt(id, createdAt.toLocalDateTime()));
+        assertSinglePartition(explain(sql, id, createdAt));
+        assertSinglePartition(explain(WebhookLogWriter.UPDATE_SQL, "success", 1, createdAt, createdAt, 200, "ok", id, createdAt));
+    }
+
+    private static void assertIndexed(String sql, Object... parameters) throws SQLException {
+        String plan = explain(sql, parameters);
+        // Partitions never written to (the days created ahead) are always planned as a seq scan of nothing
+        String scans = EMPTY_RELATION_SCAN.matcher(plan).replaceAll("");
+        assertThat(scans).as("plan of %s", sql).doesNotContain("Seq Scan").contains("Index");
+    }
+
+    private static void assertSinglePartition(String plan) {
+        Set<String> partitions = plan.lines()
+                .flatMap(line -> WEBHOOK_LOG_PARTITION.matcher(line).results().map(match -> match.group(1)))
+                .collect(Collectors.toSet());
+        assertThat(partitions).as("partitions read in%n%s", plan).hasSize(1);
+    }
+
+    // Parameters in the order their placeholders appear in the SQL
+    private static String explain(String sql, Object... parameters) throws SQLException {
+        assertThat(sql.chars().filter(c -> c == '?').count()).as("placeholders in %s", sql).isEqualTo(parameters.length);
+        StringBuilder plan = new StringBuilder();
+        try (PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql)) {
+            for (int i = 0; i < parameters.length; i++) {
+                if (parameters[i] == null) {
+                    statement.setNull(i + 1, Types.VARCHAR);
+                } else {
+                    statement.setObject(i + 1, parameters[i]);
+                }
+            }
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) plan.append(rs.getString(1)).append('\n');
+            }
+        }
+        return plan.toString();
+    }
+}
@@ -0,0 +1,46 @@
+package com.gateway.benchmarks;
+
+import com.gateway.models.Merchant;
+import com.gateway.models.Payment;
+import com.gateway.models.Refund;
+import com.gateway.webhooks.WebhookPayloads;
+
+import java.util.UUID;
+
+// Realistic entities shared by the benchmarks
+final class Fixtures {
+
+    private Fixtures() {}
+
+    static Payment payment() {
+        Merchant merchant = new Merchant();
+        merchant.setId(UUID.fromString("7b1c0c53-8a55-4f4e-9a52-2d3c1f5f1a01"));
+
+        Payment payment = new Payment();
+        payment.setId("pay_3f9c2a7d81e4b60");
+        payment.setMerchant(merchant);
+        payment.setOrderId("ord_test_001");
+        payment.setAmount(50000);
+        payment.setCurrency("INR");
+        payment.setMethod("upi");
+        payment.setVpa("test@upi");
+        payment.setStatus("success");
+        payment.setCaptured(false);
+        return payment;
+    }
+
+    static Refund refund() {
+        Refund refund = new Refund();
+        refund.setId("rfnd_8c1e4b2f9a7d3e60");
+        refund.setPaymentId("pay_3f9c2a7d81e4b60");
+        refund.setMerchantId(UUID.fromString("7b1c0c53-8a55-4f4e-9a52-2d3c1f5f1a01"));
+        refund.setAmount(1000);
+        refund.setReason("Customer requested");
+        refund.setStatus("processed");
+        return refund;
+    }
+
+    static String paymentPayload() {
+        return WebhookPayloads.payment(payment());
+    }
+}
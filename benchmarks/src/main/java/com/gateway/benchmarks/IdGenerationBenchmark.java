@@ -0,0 +1,50 @@
+package com.gateway.benchmarks;
+
+import com.gateway.ids.SnowflakeIdGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// Payment and refund ids, single-threaded and under contention from request threads.
+// uuidPaymentId is the truncated-UUID scheme the snowflake ids replaced, kept as a baseline.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IdGenerationBenchmark {
+
+    private final SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1);
+
+    @Benchmark
+    public String paymentId() {
+        return generator.paymentId();
+    }
+
+    @Benchmark
+    public String refundId() {
+        return generator.refundId();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String paymentIdContended() {
+        return generator.paymentId();
+    }
+
+    @Benchmark
+    public String uuidPaymentId() {
+        return "pay_" + UUID.randomUUID().toString().replace("-", "").substring(0, 15);
+    }
+}
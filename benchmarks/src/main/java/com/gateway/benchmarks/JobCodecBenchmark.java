@@ -0,0 +1,75 @@
+package com.gateway.benchmarks;
+
+import com.gateway.jobs.DeliverWebhookJob;
+import com.gateway.jobs.JobEnvelope;
+import com.gateway.jobs.ProcessPaymentJob;
+import com.gateway.queue.JobCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Job (de)serialization with the serializer RedisConfig installs for stream entries,
+ * against the generic JSON serializer it replaced.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JobCodecBenchmark {
+
+    private final JobCodec codec = new JobCodec();
+    private final GenericJackson2JsonRedisSerializer json = new GenericJackson2JsonRedisSerializer();
+
+    // Jobs carry their merchant as the partition, as the outbox and delay queue store them
+    private final String merchantId = UUID.randomUUID().toString();
+    private final JobEnvelope paymentJob = new JobEnvelope(new ProcessPaymentJob("pay_3f9c2a7d81e4b60"), 1_700_000_000_000L, 0, merchantId);
+    private final JobEnvelope webhookJob = new JobEnvelope(new DeliverWebhookJob(UUID.randomUUID(), LocalDateTime.of(2024, 1, 15, 10, 30, 0, 123_456_000)), 1_700_000_000_000L, 2, merchantId);
+
+    private final byte[] paymentBytes = codec.serialize(paymentJob);
+    private final byte[] webhookBytes = codec.serialize(webhookJob);
+    private final byte[] paymentJsonBytes = json.serialize(paymentJob);
+
+    @Benchmark
+    public byte[] encodePayment() {
+        return codec.serialize(paymentJob);
+    }
+
+    @Benchmark
+    public Object decodePayment() {
+        return codec.deserialize(paymentBytes);
+    }
+
+    @Benchmark
+    public byte[] encodeWebhook() {
+        return codec.serialize(webhookJob);
+    }
+
+    @Benchmark
+    public Object decodeWebhook() {
+        return codec.deserialize(webhookBytes);
+    }
+
+    @Benchmark
+    public byte[] encodePaymentJson() {
+        return json.serialize(paymentJob);
+    }
+
+    @Benchmark
+    public Object decodePaymentJson() {
+        return json.deserialize(paymentJsonBytes);
+    }
+}
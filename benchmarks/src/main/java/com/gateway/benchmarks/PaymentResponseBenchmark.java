@@ -0,0 +1,38 @@
+package com.gateway.benchmarks;
+
+import com.gateway.controllers.PaymentController;
+import com.gateway.models.Payment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// The createPayment response: built as JSON, stored as the idempotent replay, returned as a map
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PaymentResponseBenchmark {
+
+    private final Payment payment = Fixtures.payment();
+
+    @Benchmark
+    public Map<String, Object> responseMap() {
+        return PaymentController.toResponse(payment).toMap();
+    }
+
+    @Benchmark
+    public String responseJson() {
+        return PaymentController.toResponse(payment).toString();
+    }
+}
@@ -0,0 +1,39 @@
+package com.gateway.benchmarks;
+
+import com.gateway.models.Payment;
+import com.gateway.models.Refund;
+import com.gateway.webhooks.WebhookPayloads;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// org.json body building for the payment.* and refund.processed webhooks
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WebhookPayloadBenchmark {
+
+    private final Payment payment = Fixtures.payment();
+    private final Refund refund = Fixtures.refund();
+
+    @Benchmark
+    public String paymentPayload() {
+        return WebhookPayloads.payment(payment);
+    }
+
+    @Benchmark
+    public String refundPayload() {
+        return WebhookPayloads.refundProcessed(refund);
+    }
+}
@@ -0,0 +1,48 @@
+package com.gateway.benchmarks;
+
+import com.gateway.webhooks.WebhookSigner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+// HMAC-SHA256 + hex of a typical payment.success body, as done once per delivery attempt.
+// deliveryPipeline is what WebhookWorker does: encode the body once, sign those bytes.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WebhookSigningBenchmark {
+
+    private final String payload = Fixtures.paymentPayload();
+    private final byte[] body = payload.getBytes(StandardCharsets.UTF_8);
+    private final String secret = "whsec_test_abc123";
+
+    @Benchmark
+    public String sign() throws Exception {
+        return WebhookSigner.sign(payload, secret);
+    }
+
+    @Benchmark
+    public String signBytes() throws Exception {
+        return WebhookSigner.sign(body, secret);
+    }
+
+    @Benchmark
+    public void deliveryPipeline(Blackhole blackhole) throws Exception {
+        byte[] encoded = payload.getBytes(StandardCharsets.UTF_8);
+        blackhole.consume(WebhookSigner.sign(encoded, secret));
+        blackhole.consume(encoded);
+    }
+}
@@ -0,0 +1,106 @@
+package com.gateway.loadtest;
+
+import com.gateway.loadtest.StageStats.Stage;
+import org.json.JSONObject;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop client: payment n is due at start + n / rate and is sent then, whether or not earlier requests
+ * have been answered. Refunds follow successful payments as they are processed.
+ */
+class LoadDriver {
+
+    private static final String API_KEY = "key_test_abc123";       // The test merchant from V1__baseline.sql
+    private static final String API_SECRET = "secret_test_xyz789";
+    private static final int PAYMENT_AMOUNT = 50000;
+    private static final int REFUND_AMOUNT = 1000;
+
+    private final LoadTestConfig config;
+    private final StageStats stats;
+    private final String baseUrl;
+    private final HttpClient httpClient;
+
+    LoadDriver(LoadTestConfig config, StageStats stats, int apiPort) {
+        this.config = config;
+        this.stats = stats;
+        this.baseUrl = "http://127.0.0.1:" + apiPort + "/api/v1";
+        ExecutorService callbacks = Executors.newFixedThreadPool(4, MockMerchantReceiver.daemon("driver"));
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(callbacks)
+                .build();
+    }
+
+    /** Sends every payment on schedule; returns once the last one is sent (not answered). */
+    void run() {
+        long periodNanos = (long) (1_000_000_000L / config.rate);
+        long total = (long) (config.rate * config.durationSeconds);
+        long start = System.nanoTime();
+        stats.measureFrom(start + config.warmupSeconds * 1_000_000_000L);
+
+        for (long n = 0; n < total; n++) {
+            long due = start + n * periodNanos;
+            long wait;
+            while ((wait = due - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            createPayment(n, due);
+        }
+    }
+
+    private void createPayment(long n, long due) {
+        JSONObject body = new JSONObject();
+        body.put("amount", PAYMENT_AMOUNT);
+        body.put("currency", "INR");
+        body.put("method", n % 2 == 0 ? "upi" : "card");
+        body.put("order_id", "load_" + n);
+        if (n % 2 == 0) body.put("vpa", "load@upi");
+
+        post("/payments", body).whenComplete((response, error) -> {
+            if (error == null && response.statusCode() == 201) {
+                stats.created(Stage.PAYMENT_CREATE, new JSONObject(response.body()).getString("id"), due);
+            } else {
+                stats.failed(Stage.PAYMENT_CREATE, due);
+            }
+        });
+    }
+
+    /** Called when a payment is processed: refunds part of a share of the successful ones. */
+    void paymentProcessed(String paymentId, String status) {
+        if (!"success".equals(status) || ThreadLocalRandom.current().nextDouble() >= config.refundRatio) return;
+
+        long due = System.nanoTime();
+        JSONObject body = new JSONObject();
+        body.put("amount", REFUND_AMOUNT);
+        body.put("reason", "load test");
+        post("/payments/" + paymentId + "/refunds", body).whenComplete((response, error) -> {
+            if (error == null && response.statusCode() == 201) {
+                stats.created(Stage.REFUND_CREATE, new JSONObject(response.body()).getString("id"), due);
+            } else {
+                stats.failed(Stage.REFUND_CREATE, due);
+            }
+        });
+    }
+
+    private CompletableFuture<HttpResponse<String>> post(String path, JSONObject body) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Content-Type", "application/json")
+                .header("X-Api-Key", API_KEY)
+                .header("X-Api-Secret", API_SECRET)
+                .timeout(Duration.ofSeconds(30))
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .build();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
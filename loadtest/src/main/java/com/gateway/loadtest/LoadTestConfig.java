@@ -0,0 +1,82 @@
+package com.gateway.loadtest;
+
+import org.json.JSONObject;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Command line settings, given as {@code --name=value}. Anything under {@code --app.} is passed to the
+ * API and worker as a Spring property, e.g. {@code --app.worker.payments.concurrency=32}.
+ */
+public class LoadTestConfig {
+
+    final double rate;                  // payments started per second, on a fixed schedule (open loop)
+    final int durationSeconds;
+    final int warmupSeconds;            // payments started before this are sent but not measured
+    final int drainSeconds;             // how long to wait for outstanding stages after the last payment
+    final double refundRatio;           // share of successful payments that get a partial refund
+    final long paymentDelayMinMs;       // simulated bank latency
+    final long paymentDelayMaxMs;
+    final long refundDelayMs;
+    final long receiverLatencyMs;       // mock merchant endpoint
+    final long receiverLatencyJitterMs;
+    final double receiverFailureRate;   // share of webhook requests answered with a 500
+    final boolean fastRetries;          // WEBHOOK_RETRY_INTERVALS_TEST, so failed webhooks are retried within the run
+    final String report;
+    final Map<String, String> appProperties;
+
+    private LoadTestConfig(Map<String, String> args, Map<String, String> appProperties) {
+        this.rate = Double.parseDouble(args.getOrDefault("rate", "50"));
+        this.durationSeconds = Integer.parseInt(args.getOrDefault("duration-seconds", "60"));
+        this.warmupSeconds = Integer.parseInt(args.getOrDefault("warmup-seconds", "10"));
+        this.drainSeconds = Integer.parseInt(args.getOrDefault("drain-seconds", "120"));
+        this.refundRatio = Double.parseDouble(args.getOrDefault("refund-ratio", "0.2"));
+        this.paymentDelayMinMs = Long.parseLong(args.getOrDefault("payment-delay-min-ms", "50"));
+        this.paymentDelayMaxMs = Long.parseLong(args.getOrDefault("payment-delay-max-ms", "250"));
+        this.refundDelayMs = Long.parseLong(args.getOrDefault("refund-delay-ms", "100"));
+        this.receiverLatencyMs = Long.parseLong(args.getOrDefault("receiver-latency-ms", "20"));
+        this.receiverLatencyJitterMs = Long.parseLong(args.getOrDefault("receiver-latency-jitter-ms", "10"));
+        this.receiverFailureRate = Double.parseDouble(args.getOrDefault("receiver-failure-rate", "0"));
+        this.fastRetries = Boolean.parseBoolean(args.getOrDefault("fast-retries", "true"));
+        this.report = args.getOrDefault("report", "loadtest-report.json");
+        this.appProperties = appProperties;
+    }
+
+    static LoadTestConfig parse(String[] argv) {
+        Map<String, String> args = new HashMap<>();
+        Map<String, String> appProperties = new LinkedHashMap<>();
+        for (String arg : argv) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            String name = arg.substring(2, arg.indexOf('='));
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (name.startsWith("app.")) {
+                appProperties.put(name.substring(4), value);
+            } else {
+                args.put(name, value);
+            }
+        }
+        return new LoadTestConfig(args, appProperties);
+    }
+
+    JSONObject toJson() {
+        JSONObject json = new JSONObject();
+        json.put("rate", rate);
+        json.put("duration_seconds", durationSeconds);
+        json.put("warmup_seconds", warmupSeconds);
+        json.put("drain_seconds", drainSeconds);
+        json.put("refund_ratio", refundRatio);
+        json.put("payment_delay_min_ms", paymentDelayMinMs);
+        json.put("payment_delay_max_ms", paymentDelayMaxMs);
+        json.put("refund_delay_ms", refundDelayMs);
+        json.put("receiver_latency_ms", receiverLatencyMs);
+        json.put("receiver_latency_jitter_ms", receiverLatencyJitterMs);
+        json.put("receiver_failure_rate", receiverFailureRate);
+        json.put("fast_retries", fastRetries);
+        json.put("app_properties", new JSONObject(appProperties));
+        return json;
+    }
+}
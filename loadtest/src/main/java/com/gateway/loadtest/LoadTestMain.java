@@ -0,0 +1,147 @@
+package com.gateway.loadtest;
+
+import com.gateway.PaymentGatewayApplication;
+import com.gateway.loadtest.StageStats.Stage;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.pubsub.RedisPubSubAdapter;
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
+import org.json.JSONObject;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the gateway's API and worker in this JVM against local Postgres and Redis, drives payments and refunds at a
+ * fixed rate, and writes per-stage throughput and latency percentiles to a JSON report.
+ *
+ *   java -jar target/loadtest.jar --rate=200 --duration-seconds=120 --receiver-failure-rate=0.05
+ */
+public class LoadTestMain {
+
+    public static void main(String[] args) throws Exception {
+        LoadTestConfig config = LoadTestConfig.parse(args);
+        StageStats stats = new StageStats();
+        Instant startedAt = Instant.now();
+
+        try (LocalStandIns standIns = new LocalStandIns();
+             MockMerchantReceiver receiver = new MockMerchantReceiver(config, stats)) {
+
+            ConfigurableApplicationContext api = boot(config, standIns, false);
+            pointMerchantAt(standIns, receiver.url());
+            ConfigurableApplicationContext worker = boot(config, standIns, true);
+            int apiPort = Integer.parseInt(api.getEnvironment().getRequiredProperty("local.server.port"));
+
+            LoadDriver driver = new LoadDriver(config, stats, apiPort);
+            RedisClient redisClient = RedisClient.create(standIns.redisUrl());
+            StatefulRedisPubSubConnection<String, String> statusUpdates = subscribe(redisClient, stats, driver);
+            try {
+                System.out.println("🚀 Load test: " + config.rate + " payments/s for " + config.durationSeconds + "s against port " + apiPort);
+                driver.run();
+
+                long drainUntil = System.nanoTime() + config.drainSeconds * 1_000_000_000L;
+                while (stats.outstanding() > 0 && System.nanoTime() < drainUntil) {
+                    Thread.sleep(500);
+                }
+            } finally {
+                statusUpdates.close();
+                redisClient.shutdown();
+                worker.close();
+                api.close();
+            }
+
+            JSONObject report = new JSONObject();
+            report.put("started_at", startedAt.toString());
+            report.put("finished_at", Instant.now().toString());
+            report.put("config", config.toJson());
+            report.put("stages", stats.toJson());
+            report.put("receiver", receiver.toJson());
+            Files.writeString(Path.of(config.report), report.toString(2), StandardCharsets.UTF_8);
+            print(report.getJSONObject("stages"));
+            System.out.println("Report written to " + config.report);
+        }
+        System.exit(0); // Spring and Lettuce leave non-daemon threads behind
+    }
+
+    private static ConfigurableApplicationContext boot(LoadTestConfig config, LocalStandIns standIns, boolean worker) {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("DATABASE_URL", standIns.jdbcUrl());
+        properties.put("spring.datasource.username", "postgres");
+        properties.put("spring.datasource.password", "postgres");
+        properties.put("REDIS_URL", standIns.redisUrl());
+        properties.put("server.port", "0");
+        properties.put("spring.main.banner-mode", "off");
+        properties.put("WEBHOOK_RETRY_INTERVALS_TEST", String.valueOf(config.fastRetries));
+        properties.put("webhooks.archive.dir", standIns.archiveDir().toString());
+        properties.put("processor.simulator.payment-delay-min-ms", String.valueOf(config.paymentDelayMinMs));
+        properties.put("processor.simulator.payment-delay-max-ms", String.valueOf(config.paymentDelayMaxMs));
+        properties.put("processor.simulator.refund-delay-ms", String.valueOf(config.refundDelayMs));
+        // The limiter stays on, so its cost is part of the measurement, but the test merchant's quota covers the offered load
+        long quota = Math.max(100, (long) Math.ceil(config.rate * 2));
+        for (String group : new String[]{"payments", "refunds"}) {
+            properties.put("ratelimit.groups." + group + ".rate-per-second", String.valueOf(quota));
+            properties.put("ratelimit.groups." + group + ".burst", String.valueOf(quota * 2));
+        }
+        properties.putAll(config.appProperties);
+
+        // Command line arguments, so they win over the gateway's application.properties
+        List<String> args = new ArrayList<>();
+        properties.forEach((name, value) -> args.add("--" + name + "=" + value));
+        return new SpringApplicationBuilder(PaymentGatewayApplication.class)
+                .profiles(worker ? "worker" : "default")
+                .run(args.toArray(new String[0]));
+    }
+
+    private static void pointMerchantAt(LocalStandIns standIns, String webhookUrl) throws Exception {
+        try (Connection connection = DriverManager.getConnection(standIns.jdbcUrl(), "postgres", "postgres");
+             PreparedStatement statement = connection.prepareStatement("UPDATE merchants SET webhook_url = ? WHERE api_key = 'key_test_abc123'")) {
+            statement.setString(1, webhookUrl);
+            statement.executeUpdate();
+        }
+    }
+
+    // Workers publish "<id> <status>" on every status change (StatusNotifications)
+    private static StatefulRedisPubSubConnection<String, String> subscribe(RedisClient client, StageStats stats, LoadDriver driver) {
+        StatefulRedisPubSubConnection<String, String> connection = client.connectPubSub();
+        connection.addListener(new RedisPubSubAdapter<>() {
+            @Override
+            public void message(String channel, String message) {
+                int space = message.indexOf(' ');
+                if (space < 0) return;
+                String id = message.substring(0, space);
+                String status = message.substring(space + 1);
+                if (channel.equals("status:payments") && !"pending".equals(status)) {
+                    stats.reached(Stage.PAYMENT_PROCESSED, id);
+                    driver.paymentProcessed(id, status);
+                } else if (channel.equals("status:refunds") && !"pending".equals(status)) {
+                    stats.reached(Stage.REFUND_PROCESSED, id);
+                }
+            }
+        });
+        connection.sync().subscribe("status:payments", "status:refunds");
+        return connection;
+    }
+
+    private static void print(JSONObject stages) {
+        System.out.println();
+        System.out.printf("%-26s %8s %7s %10s %10s %10s %10s %10s%n", "stage", "count", "errors", "per sec", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Stage stage : Stage.values()) {
+            JSONObject entry = stages.getJSONObject(stage.label);
+            JSONObject latency = entry.getJSONObject("latency_ms");
+            System.out.printf("%-26s %8d %7d %10.1f %10.1f %10.1f %10.1f %10.1f%n", stage.label,
+                    entry.getLong("count"), entry.getLong("errors"), entry.getDouble("throughput_per_second"),
+                    latency.getDouble("p50"), latency.getDouble("p99"), latency.getDouble("p99.9"), latency.getDouble("max"));
+        }
+        System.out.println();
+    }
+}
@@ -0,0 +1,56 @@
+package com.gateway.loadtest;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Throwaway Postgres and Redis processes (real binaries, started from the jar) on free local ports,
+ * plus a temporary webhook archive directory. Everything is removed on close.
+ */
+class LocalStandIns implements AutoCloseable {
+
+    private final EmbeddedPostgres postgres;
+    private final RedisServer redis;
+    private final int redisPort;
+    private final Path archiveDir;
+
+    LocalStandIns() throws IOException {
+        this.postgres = EmbeddedPostgres.builder().start();
+        this.redisPort = freePort();
+        this.redis = new RedisServer(redisPort);
+        redis.start();
+        this.archiveDir = Files.createTempDirectory("gateway-loadtest-archive");
+    }
+
+    String jdbcUrl() {
+        return postgres.getJdbcUrl("postgres", "postgres");
+    }
+
+    String redisUrl() {
+        return "redis://127.0.0.1:" + redisPort;
+    }
+
+    Path archiveDir() {
+        return archiveDir;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            redis.stop();
+        } finally {
+            postgres.close();
+        }
+    }
+}
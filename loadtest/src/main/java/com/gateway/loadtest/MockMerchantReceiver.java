@@ -0,0 +1,117 @@
+package com.gateway.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The merchant's webhook endpoint. Answers after a configurable delay, without holding a thread while waiting,
+ * and fails a configurable share of requests with a 500. Accepted webhooks mark their payment or refund delivered.
+ */
+class MockMerchantReceiver implements AutoCloseable {
+
+    private static final byte[] OK = "{\"received\":true}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] FAILED = "{\"error\":\"injected failure\"}".getBytes(StandardCharsets.UTF_8);
+
+    private final LoadTestConfig config;
+    private final StageStats stats;
+    private final HttpServer server;
+    private final ExecutorService handlers = Executors.newFixedThreadPool(8, daemon("receiver"));
+    private final ScheduledExecutorService responders = Executors.newScheduledThreadPool(2, daemon("receiver-delay"));
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong injectedFailures = new AtomicLong();
+
+    MockMerchantReceiver(LoadTestConfig config, StageStats stats) throws IOException {
+        this.config = config;
+        this.stats = stats;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        server.createContext("/webhook", this::handle);
+        server.setExecutor(handlers);
+        server.start();
+    }
+
+    String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/webhook";
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        byte[] body;
+        try (InputStream in = exchange.getRequestBody()) {
+            body = in.readAllBytes();
+        }
+        boolean fail = ThreadLocalRandom.current().nextDouble() < config.receiverFailureRate;
+        long jitter = config.receiverLatencyJitterMs > 0 ? ThreadLocalRandom.current().nextLong(-config.receiverLatencyJitterMs, config.receiverLatencyJitterMs + 1) : 0;
+        long delay = Math.max(0, config.receiverLatencyMs + jitter);
+        responders.schedule(() -> respond(exchange, body, fail), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void respond(HttpExchange exchange, byte[] body, boolean fail) {
+        try (OutputStream out = exchange.getResponseBody()) {
+            if (fail) {
+                injectedFailures.incrementAndGet();
+                exchange.sendResponseHeaders(500, FAILED.length);
+                out.write(FAILED);
+                return;
+            }
+            exchange.sendResponseHeaders(200, OK.length);
+            out.write(OK);
+        } catch (IOException e) {
+            return; // The gateway gave up on the request (timeout); it will retry
+        } finally {
+            exchange.close();
+        }
+        delivered(body);
+    }
+
+    private void delivered(byte[] body) {
+        try {
+            JSONObject payload = new JSONObject(new String(body, StandardCharsets.UTF_8));
+            String event = payload.getString("event");
+            JSONObject data = payload.getJSONObject("data");
+            if (event.startsWith("payment.")) {
+                stats.reached(StageStats.Stage.PAYMENT_WEBHOOK, data.getJSONObject("payment").getString("id"));
+            } else if (event.equals("refund.processed")) {
+                stats.reached(StageStats.Stage.REFUND_WEBHOOK, data.getString("refund_id"));
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Unexpected webhook payload: " + e.getMessage());
+        }
+    }
+
+    JSONObject toJson() {
+        JSONObject json = new JSONObject();
+        json.put("requests", requests.get());
+        json.put("injected_failures", injectedFailures.get());
+        return json;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        responders.shutdownNow();
+        handlers.shutdownNow();
+    }
+
+    static ThreadFactory daemon(String name) {
+        AtomicLong index = new AtomicLong();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,153 @@
+package com.gateway.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.json.JSONObject;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latency per stage of a payment or refund, measured from the moment its create request was due
+ * (not when it was actually sent), so a stalled gateway shows up as latency instead of a lower request rate.
+ * Only flows started after the warmup are recorded.
+ */
+class StageStats {
+
+    enum Stage {
+        PAYMENT_CREATE("payment.create"),
+        PAYMENT_PROCESSED("payment.processed"),
+        PAYMENT_WEBHOOK("payment.webhook_delivered"),
+        REFUND_CREATE("refund.create"),
+        REFUND_PROCESSED("refund.processed"),
+        REFUND_WEBHOOK("refund.webhook_delivered");
+
+        final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+    }
+
+    private record Flow(long dueNanos, boolean measured, Stage[] stages, AtomicLong reached) {}
+
+    private static final Stage[] PAYMENT_STAGES = {Stage.PAYMENT_PROCESSED, Stage.PAYMENT_WEBHOOK};
+    private static final Stage[] REFUND_STAGES = {Stage.REFUND_PROCESSED, Stage.REFUND_WEBHOOK};
+
+    private final Map<Stage, Histogram> latencies = new EnumMap<>(Stage.class);
+    private final Map<Stage, AtomicLong> errors = new EnumMap<>(Stage.class);
+    private final Map<Stage, AtomicLong> lastCompletion = new EnumMap<>(Stage.class);
+    private final Map<String, Flow> flows = new ConcurrentHashMap<>();
+    // Stage events that arrived before the create response told us the id
+    private final Map<String, Long> early = new ConcurrentHashMap<>();
+    private volatile long measureFromNanos;
+
+    StageStats() {
+        for (Stage stage : Stage.values()) {
+            latencies.put(stage, new ConcurrentHistogram(TimeUnit.MINUTES.toMicros(30), 3));
+            errors.put(stage, new AtomicLong());
+            lastCompletion.put(stage, new AtomicLong());
+        }
+    }
+
+    void measureFrom(long nanos) {
+        this.measureFromNanos = nanos;
+    }
+
+    /** A create request succeeded: records its latency and starts tracking the later stages under its id. */
+    void created(Stage createStage, String id, long dueNanos) {
+        boolean measured = dueNanos >= measureFromNanos;
+        record(createStage, dueNanos, System.nanoTime(), measured);
+        Stage[] stages = createStage == Stage.PAYMENT_CREATE ? PAYMENT_STAGES : REFUND_STAGES;
+        Flow flow = new Flow(dueNanos, measured, stages, new AtomicLong());
+        flows.put(id, flow);
+        for (Stage stage : stages) {
+            Long at = early.remove(stage + ":" + id);
+            if (at != null) reached(flow, stage, at);
+        }
+    }
+
+    void failed(Stage stage, long dueNanos) {
+        if (dueNanos >= measureFromNanos) errors.get(stage).incrementAndGet();
+    }
+
+    void reached(Stage stage, String id) {
+        long now = System.nanoTime();
+        Flow flow = flows.get(id);
+        if (flow == null) {
+            early.put(stage + ":" + id, now);
+            flow = flows.get(id); // created() may have run in between
+            if (flow == null || early.remove(stage + ":" + id) == null) return;
+        }
+        reached(flow, stage, now);
+    }
+
+    private void reached(Flow flow, Stage stage, long at) {
+        long bit = 1L << stage.ordinal();
+        long before = flow.reached().getAndUpdate(mask -> mask | bit);
+        if ((before & bit) != 0) return; // Only the first time counts, e.g. a redelivered webhook
+        record(stage, flow.dueNanos(), at, flow.measured());
+    }
+
+    private void record(Stage stage, long dueNanos, long at, boolean measured) {
+        if (!measured) return;
+        latencies.get(stage).recordValue(Math.max(0, TimeUnit.NANOSECONDS.toMicros(at - dueNanos)));
+        lastCompletion.get(stage).accumulateAndGet(at, Math::max);
+    }
+
+    /** Measured flows still missing a stage. */
+    long outstanding() {
+        long count = 0;
+        for (Flow flow : flows.values()) {
+            if (flow.measured() && !complete(flow)) count++;
+        }
+        return count;
+    }
+
+    private static boolean complete(Flow flow) {
+        for (Stage stage : flow.stages()) {
+            if ((flow.reached().get() & (1L << stage.ordinal())) == 0) return false;
+        }
+        return true;
+    }
+
+    JSONObject toJson() {
+        Map<Stage, Long> missing = new EnumMap<>(Stage.class);
+        for (Flow flow : flows.values()) {
+            if (!flow.measured()) continue;
+            for (Stage stage : flow.stages()) {
+                if ((flow.reached().get() & (1L << stage.ordinal())) == 0) missing.merge(stage, 1L, Long::sum);
+            }
+        }
+
+        JSONObject json = new JSONObject();
+        for (Stage stage : Stage.values()) {
+            Histogram histogram = latencies.get(stage);
+            JSONObject entry = new JSONObject();
+            long count = histogram.getTotalCount();
+            double seconds = (lastCompletion.get(stage).get() - measureFromNanos) / 1e9;
+            entry.put("count", count);
+            entry.put("errors", errors.get(stage).get());
+            entry.put("incomplete", missing.getOrDefault(stage, 0L));
+            entry.put("throughput_per_second", count > 0 && seconds > 0 ? round(count / seconds) : 0);
+
+            JSONObject latency = new JSONObject();
+            latency.put("mean", round(histogram.getMean() / 1000.0));
+            for (double percentile : new double[]{50, 90, 99, 99.9}) {
+                latency.put("p" + (percentile % 1 == 0 ? String.valueOf((int) percentile) : String.valueOf(percentile)),
+                        round(histogram.getValueAtPercentile(percentile) / 1000.0));
+            }
+            latency.put("max", round(histogram.getMaxValue() / 1000.0));
+            entry.put("latency_ms", latency);
+            json.put(stage.label, entry);
+        }
+        return json;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}